@@ -0,0 +1,110 @@
+package quantum.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import quantum.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static quantum.QuantumAlgorithm.*;
+
+/**
+ * Measures the subroutines of {@code QuantumAlgorithm} on registers of various lengths. Every call starts from new registers, the
+ * creation of which is included in the time. The oracle and the quantum function act on every basis state of the register, so at the
+ * larger widths these are dominated by applying their gates, and the output register of the quantum function is kept short so that
+ * its gate grows with the input alone. Grover's algorithm, whose amount of iterations grows with the width, and QFTMAC, which
+ * entangles two registers of the width, are measured on narrower registers in {@link Narrow}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class AlgorithmBenchmark {
+    /**the length of the output register of the quantum function, as its gate acts on every basis state of both registers*/
+    private static final int OUTPUT = 2;
+
+    @Param({"8", "12", "16", "20"})
+    public int qubits;
+
+    private Consumer<QubitRegister> oracle;
+    private BiConsumer<QubitRegister,QubitRegister> function;
+
+    @Setup
+    public void setup(){
+        Configuration.setSplitPolicy(SplitPolicy.EAGER);
+        oracle = QuantumAlgorithm.oracle(x -> x == 3);
+        function = QuantumAlgorithm.quantumFunction(x -> x * 3);
+    }
+
+    @Benchmark
+    public int qft(){
+        QubitRegister a = new QubitRegister(qubits, 3);
+        QFT(a);
+        return a.measure();
+    }
+
+    @Benchmark
+    public int inverseQft(){
+        QubitRegister a = new QubitRegister(qubits, 3);
+        inverseQFT(a);
+        return a.measure();
+    }
+
+    @Benchmark
+    public int oracle(){
+        QubitRegister a = new QubitRegister(qubits);
+        H(a);
+        oracle.accept(a);
+        return a.measure();
+    }
+
+    @Benchmark
+    public int quantumFunction(){
+        QubitRegister input = new QubitRegister(qubits);
+        QubitRegister output = new QubitRegister(OUTPUT);
+        H(input);
+        function.accept(input, output);
+        return output.measure();
+    }
+
+    /**
+     * Measures the subroutines that take too long at the widths of the enclosing class. JMH does not read the annotations of an
+     * enclosing class, so they are repeated here.
+     */
+    @State(Scope.Thread)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+    public static class Narrow {
+        @Param({"4", "6", "8"})
+        public int qubits;
+
+        private Consumer<QubitRegister> oracle;
+
+        @Setup
+        public void setup(){
+            Configuration.setSplitPolicy(SplitPolicy.EAGER);
+            oracle = QuantumAlgorithm.oracle(x -> x == 3);
+        }
+
+        @Benchmark
+        public int qftmac(){
+            QubitRegister a = new QubitRegister(qubits, 3);
+            QubitRegister b = new QubitRegister(qubits, 3);
+            QFT(a);
+            QFTMAC(a, b, 3);
+            inverseQFT(a);
+            return a.measure();
+        }
+
+        @Benchmark
+        public int grovers(){
+            return QuantumAlgorithm.grovers(oracle, qubits);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package quantum.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import quantum.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static quantum.QuantumGate.*;
+
+/**
+ * Measures the time taken to apply a single gate to a state in which every qubit is entangled, for states of various widths, with
+ * and without the Vector API. Each gate is one full pass over the coefficients of the state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class GateBenchmark {
+    @Param({"10", "16", "20", "24"})
+    public int qubits;
+
+    @Param({"true", "false"})
+    public boolean vectorized;
+
+    private final QuantumGate toffoli = C(C(X));
+    private QubitRegister qr;
+
+    @Setup
+    public void setup(){
+        Configuration.setSplitPolicy(SplitPolicy.NEVER);
+        Configuration.setVectorized(vectorized);
+        //a basis state would otherwise be stored sparsely, as its only nonzero coefficient
+        Configuration.setSparseThreshold(0);
+        qr = new QubitRegister(qubits);
+        //a gate on every qubit entangles them all into a single state
+        new DiagonalGate(qubits, x -> 0).accept(qr);
+    }
+
+    @Benchmark
+    public void single(){
+        H.accept(qr.qubits[qubits/2]);
+    }
+
+    @Benchmark
+    public void two(){
+        SQRT_SWAP.accept(qr.qubits[0], qr.qubits[qubits-1]);
+    }
+
+    @Benchmark
+    public void diagonal(){
+        R(3).accept(qr.qubits[qubits/2]);
+    }
+
+    @Benchmark
+    public void controlled(){
+        CNOT.accept(qr.qubits[1], qr.qubits[qubits/2]);
+    }
+
+    @Benchmark
+    public void doublyControlled(){
+        toffoli.accept(qr.qubits[0], qr.qubits[1], qr.qubits[qubits-1]);
+    }
+}
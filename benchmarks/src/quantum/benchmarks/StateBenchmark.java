@@ -0,0 +1,127 @@
+package quantum.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import quantum.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static quantum.QuantumGate.*;
+
+/**
+ * Measures the operations that change the structure of a state rather than its coefficients: entangling two states, splitting a
+ * state that has become separable, measuring and sampling, each on a register of the full width. Operations that destroy their input
+ * are timed as single shots over a batch of new registers, which are created before each iteration rather than before each call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class StateBenchmark {
+    /**the amount of new registers that each shot of an operation that destroys its input is given*/
+    private static final int BATCH = 16;
+
+    @Param({"10", "14", "18"})
+    public int qubits;
+
+    @Param({"1000"})
+    public int shots;
+
+    private final QuantumGate identity = new DiagonalGate(0, 0, 0, 0);
+    private QubitRegister superposition;
+
+    @Setup(Level.Trial)
+    public void sampled(){
+        Configuration.setSplitPolicy(SplitPolicy.NEVER);
+        superposition = superposition(qubits);
+    }
+
+    /**
+     * Pairs of registers whose widths add up to that of the benchmark, which are entangled into one state.
+     */
+    @State(Scope.Thread)
+    public static class Halves {
+        QubitRegister[] a = new QubitRegister[BATCH];
+        QubitRegister[] b = new QubitRegister[BATCH];
+
+        @Setup(Level.Iteration)
+        public void setup(StateBenchmark benchmark){
+            Configuration.setSplitPolicy(SplitPolicy.NEVER);
+            for(int x = 0; x < BATCH; x++){
+                a[x] = superposition(benchmark.qubits/2);
+                b[x] = superposition(benchmark.qubits - benchmark.qubits/2);
+            }
+        }
+    }
+
+    /**
+     * Registers of the full width of the benchmark, which are measured or split.
+     */
+    @State(Scope.Thread)
+    public static class Registers {
+        QubitRegister[] registers = new QubitRegister[BATCH];
+
+        @Setup(Level.Iteration)
+        public void setup(StateBenchmark benchmark){
+            Configuration.setSplitPolicy(SplitPolicy.NEVER);
+            for(int x = 0; x < BATCH; x++)
+                registers[x] = superposition(benchmark.qubits);
+        }
+    }
+
+    /**
+     * Creates a register whose qubits are all in |+&gt;, held in a single state even though they are not entangled.
+     */
+    private static QubitRegister superposition(int length){
+        QubitRegister qr = new QubitRegister(length);
+        for(Qubit q : qr.qubits)
+            H.accept(q);
+        new DiagonalGate(length, x -> 0).accept(qr);
+        return qr;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OperationsPerInvocation(BATCH)
+    @Warmup(iterations = 20)
+    @Measurement(iterations = 50)
+    public void entangle(Halves halves){
+        for(int x = 0; x < BATCH; x++)
+            identity.accept(halves.a[x].qubits[0], halves.b[x].qubits[0]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OperationsPerInvocation(BATCH)
+    @Warmup(iterations = 20)
+    @Measurement(iterations = 50)
+    public void simplify(Registers registers){
+        //CNOT leaves |+>|+> unchanged, after which every qubit is split into a state of its own
+        Configuration.setSplitPolicy(SplitPolicy.EAGER);
+        for(QubitRegister qr : registers.registers)
+            CNOT.accept(qr.qubits[0], qr.qubits[1]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OperationsPerInvocation(BATCH)
+    @Warmup(iterations = 20)
+    @Measurement(iterations = 50)
+    public long measure(Registers registers){
+        long sum = 0;
+        for(QubitRegister qr : registers.registers)
+            sum += qr.measure();
+        return sum;
+    }
+
+    @Benchmark
+    public int sample(){
+        return superposition.sample();
+    }
+
+    @Benchmark
+    public int[] sampleShots(){
+        return superposition.sample(shots);
+    }
+}
@@ -0,0 +1,117 @@
+package quantum;
+
+import java.util.BitSet;
+
+/**
+ * A {@code Backend} carries out the gates of a {@code Circuit}, and measures the state that results. Backends differ in how they
+ * represent the state of the qubits, and so in which circuits they can run and how quickly. The state of a register is given as an
+ * {@code int} for registers of up to 32 qubits, as a {@code long} for up to 64 qubits, and as a {@code BitSet} for any amount.
+ */
+public interface Backend {
+    /**
+     * Applies each gate directly to the qubits it operates on, as {@link QuantumGate#accept(Qubit...)} does outside of a recording,
+     * and measures the qubits themselves.
+     */
+    Backend QUBITS = new QubitBackend();
+
+    /**
+     * Applies a gate to a set of qubits.
+     * @param gate the gate to be applied
+     * @param operands the operand qubits, of the same amount as the size of the gate
+     */
+    void apply(QuantumGate gate, Qubit... operands);
+
+    /**
+     * Collapses a {@code Qubit} to either |0&gt; or |1&gt;, within the state held by this backend
+     * @param qubit the {@code Qubit} to be measured
+     * @return the result of this collapse
+     */
+    boolean measure(Qubit qubit);
+
+    /**
+     * Performs a measurement on all of the qubits in a register, within the state held by this backend.
+     * @param qr the register to be measured
+     * @return the state that the register collapses into
+     * @throws IllegalStateException if the register has more than 32 qubits, in which case nothing is measured
+     */
+    default int measure(QubitRegister qr){
+        qr.checkWidth(Integer.SIZE);
+        return (int)measureLong(qr);
+    }
+
+    /**
+     * Performs a measurement on all of the qubits in a register of up to 64 qubits, within the state held by this backend.
+     * @param qr the register to be measured
+     * @return the state that the register collapses into
+     * @throws IllegalStateException if the register has more than 64 qubits, in which case nothing is measured
+     */
+    default long measureLong(QubitRegister qr){
+        qr.checkWidth(Long.SIZE);
+        long result = 0;
+        for(int x = 0; x < qr.qubits.length; x++)
+            if(measure(qr.qubits[x]))
+                result |= 1L<<x;
+        return result;
+    }
+
+    /**
+     * Performs a measurement on all of the qubits in a register of any size, within the state held by this backend.
+     * @param qr the register to be measured
+     * @return the state that the register collapses into, in which bit n is the basis of the nth qubit
+     */
+    default BitSet measureBits(QubitRegister qr){
+        BitSet result = new BitSet(qr.qubits.length);
+        for(int x = 0; x < qr.qubits.length; x++)
+            result.set(x, measure(qr.qubits[x]));
+        return result;
+    }
+
+    /**
+     * Randomly chooses many states of a register at once, without collapse.
+     * @param qr the register to be sampled
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states of the register, each chosen independently
+     */
+    int[] sample(QubitRegister qr, int shots);
+
+    /**
+     * Randomly chooses many states of a register of up to 64 qubits at once, without collapse. Backends that can hold more than 32
+     * qubits override this, as by default it is only able to widen the results of {@link #sample(QubitRegister, int)}.
+     * @param qr the register to be sampled
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states of the register, each chosen independently
+     * @throws IllegalStateException if the register has more qubits than this backend can sample as a {@code long}
+     */
+    default long[] sampleLong(QubitRegister qr, int shots){
+        qr.checkWidth(Integer.SIZE);
+        int[] states = sample(qr, shots);
+        long[] result = new long[shots];
+        for(int shot = 0; shot < shots; shot++)
+            result[shot] = Integer.toUnsignedLong(states[shot]);
+        return result;
+    }
+
+    /**
+     * Randomly chooses many states of a register of any size at once, without collapse. Backends that can hold more than 64 qubits
+     * override this, as by default it is only able to widen the results of {@link #sampleLong(QubitRegister, int)}.
+     * @param qr the register to be sampled
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states of the register, in which bit n is the basis of the nth qubit
+     * @throws IllegalStateException if the register has more qubits than this backend can sample
+     */
+    default BitSet[] sampleBits(QubitRegister qr, int shots){
+        long[] states = sampleLong(qr, shots);
+        BitSet[] result = new BitSet[shots];
+        for(int shot = 0; shot < shots; shot++)
+            result[shot] = BitSet.valueOf(new long[]{states[shot]});
+        return result;
+    }
+
+    /**
+     * @param gate a gate that could be applied
+     * @return whether this backend is able to apply the gate
+     */
+    default boolean supports(QuantumGate gate){
+        return true;
+    }
+}
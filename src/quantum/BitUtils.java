@@ -1,9 +1,11 @@
 package quantum;
 
+import java.util.BitSet;
 import java.util.function.Predicate;
 
 /**
- * The {@code BitUtils} class houses commonly used methods that involve the bits of an {@code int}
+ * The {@code BitUtils} class houses commonly used methods that involve the bits of an {@code int} or a {@code long}. Basis states of
+ * more than 31 qubits need the {@code long} overloads, and those of more than 63 qubits are held in a {@code BitSet}.
  */
 public class BitUtils {
     /**
@@ -32,6 +34,20 @@ public class BitUtils {
         return arr;
     }
 
+    /**
+     * Creates a boolean array of a specified length with the bits of a given {@code long}, starting with the least significant bit.
+     *
+     * @param state value to be put into the array
+     * @param length length of the array to be created, at most 64
+     * @return a boolean array representation of the bits of state.
+     */
+    public static boolean[] toBooleanArray(long state, int length){
+        boolean[] arr = new boolean[length];
+        for(int x = 0; x < length; x++)
+            arr[x] = bit(state,x);
+        return arr;
+    }
+
     /**
      * Tests for a specified bit of an {@code int}
      * @param state the value to be checked.
@@ -42,6 +58,16 @@ public class BitUtils {
         return ((state>>>location)&1)==1;
     }
 
+    /**
+     * Tests for a specified bit of a {@code long}
+     * @param state the value to be checked.
+     * @param location the bit index of the value to be checked.
+     * @return the bit of the value at the location, as a {@code boolean}
+     */
+    public static boolean bit(long state, int location){
+        return ((state>>>location)&1)==1;
+    }
+
     /**
      * Reads a {@code boolean[]} as bits and creates an {@code int}. The first index of the {@code boolean[]} is the least significant of the {@code int}.
      * This is intended to have the nth bit of the resultant to be equivalent to the nth index in the array.
@@ -52,6 +78,15 @@ public class BitUtils {
         return buildInt(x->given[x],given.length);
     }
 
+    /**
+     * Reads a {@code boolean[]} as bits and creates a {@code long}. The first index of the {@code boolean[]} is the least significant of the {@code long}.
+     * @param given the bits of a number, starting with the least significant
+     * @return a {@code long} representation with the specified bits
+     */
+    public static long toLong(boolean[] given){
+        return buildLong(x->given[x],given.length);
+    }
+
     /**
      * Creates a binary string representation of a {@code boolean[]}. Ex: [true, true, false] -&gt; 3 -&gt; "011"
      * @param given the bits of the binary value, starting with the least significant bit
@@ -77,18 +112,139 @@ public class BitUtils {
         return (state&((1<<location)-1)) | (value?1<<location:0) | ((state>>>location)<<(location+1));
     }
 
+    /**
+     * Inserts a bit into a {@code long}, shifting the most significant bits in order to fit the new value.
+     * @param state {@code long} value in which the bit should be inserted.
+     * @param location bit index where the bit should be inserted.
+     * @param value bit value to be inserted into the {@code long}
+     * @return the {@code long} with the inserted bit.
+     */
+    public static long insertBit(long state, int location, boolean value){
+        return (state&((1L<<location)-1)) | (value?1L<<location:0) | ((state>>>location)<<(location+1));
+    }
+
     /**
      * Initializes an {@code int} with bits according to a specified function, and with a given amount of bits.
      * @param bitmap function for which the bits of the {@code int} will be determined. The {@code Integer} in this predicate is the bit index,
      *               and test should specify whether the bit at this index is 1.
      * @param length amount of bits to be included in the {@code int}. Any possible bits that the {@code bitmap} would respond true to beyond this point are <em>ignored</em>
      * @return the {@code int} with bits as specified by the function.
+     * @throws IllegalArgumentException if {@code length} is more than the 32 bits of an {@code int}
      */
     public static int buildInt(Predicate<Integer> bitmap, int length){
+        if(length > Integer.SIZE)
+            throw new IllegalArgumentException("Too many bits for an int");
         int result = 0;
         for(int x = 0; x < length; x++)
             if(bitmap.test(x))
                 result |= (1<<x);
         return result;
     }
-}
\ No newline at end of file
+
+    /**
+     * Initializes a {@code long} with bits according to a specified function, and with a given amount of bits.
+     * @param bitmap function for which the bits of the {@code long} will be determined, as in {@link #buildInt(Predicate, int)}
+     * @param length amount of bits to be included in the {@code long}
+     * @return the {@code long} with bits as specified by the function.
+     * @throws IllegalArgumentException if {@code length} is more than the 64 bits of a {@code long}
+     */
+    public static long buildLong(Predicate<Integer> bitmap, int length){
+        if(length > Long.SIZE)
+            throw new IllegalArgumentException("Too many bits for a long");
+        long result = 0;
+        for(int x = 0; x < length; x++)
+            if(bitmap.test(x))
+                result |= (1L<<x);
+        return result;
+    }
+
+    /**
+     * Initializes a {@code BitSet} with bits according to a specified function, and with any amount of bits.
+     * @param bitmap function for which the bits of the {@code BitSet} will be determined, as in {@link #buildInt(Predicate, int)}
+     * @param length amount of bits to be included in the {@code BitSet}
+     * @return the {@code BitSet} with bits as specified by the function.
+     */
+    public static BitSet buildBits(Predicate<Integer> bitmap, int length){
+        BitSet result = new BitSet(length);
+        for(int x = 0; x < length; x++)
+            if(bitmap.test(x))
+                result.set(x);
+        return result;
+    }
+
+    /**
+     * Reads the bits of a {@code BitSet} as a {@code long}, in which the bit at index n of the {@code BitSet} is the nth bit.
+     * @param bits a {@code BitSet} with no bits at indices of 64 or more
+     * @return the {@code long} with the same bits
+     * @throws IllegalArgumentException if the {@code BitSet} has bits beyond the 64 bits of a {@code long}
+     */
+    public static long toLong(BitSet bits){
+        if(bits.length() > Long.SIZE)
+            throw new IllegalArgumentException("Too many bits for a long");
+        return bits.isEmpty() ? 0 : bits.toLongArray()[0];
+    }
+
+    /**
+     * Spreads the bits of an {@code int} over the set bits of a mask, starting with the least significant. The nth bit of the value
+     * becomes the nth set bit of the mask, and all bits outside the mask are 0. Ex: (0b11, 0b1010) -&gt; 0b1010
+     * @param value the bits to be spread, starting with the least significant
+     * @param mask the bit indices that the bits of the value are placed at
+     * @return the bits of the value at the indices of the mask
+     */
+    public static int deposit(int value, int mask){
+        int result = 0;
+        for(int x = 0; mask != 0; x++){
+            int lowest = mask & -mask;
+            if(bit(value,x))
+                result |= lowest;
+            mask ^= lowest;
+        }
+        return result;
+    }
+
+    /**
+     * @param states basis states of at most 32 bits
+     * @return the low 32 bits of each of the basis states
+     */
+    static int[] narrow(long[] states){
+        int[] result = new int[states.length];
+        for(int x = 0; x < states.length; x++)
+            result[x] = (int)states[x];
+        return result;
+    }
+
+    /**
+     * Spreads the bits of a {@code long} over the set bits of a mask, as {@link #deposit(int, int)} does for an {@code int}.
+     * @param value the bits to be spread, starting with the least significant
+     * @param mask the bit indices that the bits of the value are placed at
+     * @return the bits of the value at the indices of the mask
+     */
+    public static long deposit(long value, long mask){
+        long result = 0;
+        for(int x = 0; mask != 0; x++){
+            long lowest = mask & -mask;
+            if(bit(value,x))
+                result |= lowest;
+            mask ^= lowest;
+        }
+        return result;
+    }
+
+    /**
+     * Gathers the bits of a {@code long} at the set bits of a mask into consecutive bits, starting with the least significant. This is
+     * the opposite of {@link #deposit(int, int)}, as the nth set bit of the mask becomes the nth bit of the result. Ex: (0b1000, 0b1010) -&gt; 0b10
+     * @param value the value to take the bits from
+     * @param mask the bit indices of the value to be gathered
+     * @return the bits of the value at the indices of the mask, packed together
+     */
+    public static long extract(long value, long mask){
+        long result = 0;
+        for(int x = 0; mask != 0; x++){
+            long lowest = mask & -mask;
+            if((value & lowest) != 0)
+                result |= 1L<<x;
+            mask ^= lowest;
+        }
+        return result;
+    }
+}
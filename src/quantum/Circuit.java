@@ -0,0 +1,140 @@
+package quantum;
+
+import java.util.*;
+
+/**
+ * The {@code Circuit} class records a sequence of gates along with the qubits that they operate on, so that they can be
+ * executed later, as many times as needed, and on a chosen {@code Backend}. Gates can be added one at a time, or by recording
+ * any code that applies them, such as the subroutines of {@code QuantumAlgorithm}:
+ * <pre>{@code
+ * Circuit circuit = new Circuit().record(() -> QFTMAC(a, b, 3));
+ * circuit.execute();
+ * }</pre>
+ */
+public class Circuit {
+    /**the circuit being recorded on each thread, if any*/
+    private static final ThreadLocal<Circuit> recording = new ThreadLocal<>();
+
+    /**the gates of this circuit, in the order that they are applied*/
+    final List<Operation> operations = new ArrayList<>();
+
+    /**
+     * A gate and the qubits it is applied to.
+     */
+    static class Operation {
+        final QuantumGate gate;
+        final Qubit[] operands;
+
+        Operation(QuantumGate gate, Qubit[] operands){
+            this.gate = gate;
+            this.operands = operands;
+        }
+    }
+
+    /**
+     * @return the circuit that gates are being recorded to on the current thread, or {@code null} if there is none
+     */
+    static Circuit recording(){
+        return recording.get();
+    }
+
+    /**
+     * Adds a gate to the end of this circuit.
+     * @param gate the gate to be added
+     * @param operands the qubits that the gate will be applied to
+     * @return this {@code Circuit}
+     */
+    public Circuit add(QuantumGate gate, Qubit... operands){
+        if(operands.length != gate.size)
+            throw new IllegalArgumentException("Invalid number of operands");
+
+        operations.add(new Operation(gate, operands.clone()));
+        return this;
+    }
+
+    /**
+     * Adds a gate that operates on all of the qubits of a register to the end of this circuit.
+     * @param gate the gate to be added
+     * @param qr the register that the gate will be applied to
+     * @return this {@code Circuit}
+     */
+    public Circuit add(QuantumGate gate, QubitRegister qr){
+        return add(gate, qr.qubits);
+    }
+
+    /**
+     * Runs some code, adding every gate that it applies through {@link QuantumGate#accept(Qubit...)} to the end of this circuit
+     * instead of applying it. Only gates are recorded: measurements and anything else that the code does happen immediately.
+     * @param routine the code to be recorded
+     * @return this {@code Circuit}
+     */
+    public Circuit record(Runnable routine){
+        Circuit previous = recording.get();
+        recording.set(this);
+        try{
+            routine.run();
+        }
+        finally{
+            if(previous == null)
+                recording.remove();
+            else
+                recording.set(previous);
+        }
+        return this;
+    }
+
+    /**
+     * Applies all gates of this circuit to their qubits, in order.
+     */
+    public void execute(){
+        execute(Backend.QUBITS);
+    }
+
+    /**
+     * Passes all gates of this circuit to a backend, in order.
+     * @param backend the {@code Backend} that carries out the gates
+     */
+    public void execute(Backend backend){
+        for(Operation operation : operations)
+            backend.apply(operation.gate, operation.operands);
+    }
+
+    /**
+     * Creates a circuit with the same effect as this one, in which every run of consecutive gates that together act on at most
+     * {@code width} qubits is merged into a single gate. Each gate is a full pass over the state, so fewer, wider gates are usually faster.
+     * @param width the largest amount of qubits that a merged gate may act on, usually no more than 4 or 5
+     * @return a new {@code Circuit} with the merged gates
+     */
+    public Circuit fuse(int width){
+        return Fusion.fuse(this, width);
+    }
+
+    /**
+     * Tests whether every gate of this circuit is a Clifford gate on one or two qubits, such as H, X, Y, Z, S, CNOT or R(2).
+     * Such circuits can be executed on a {@code StabilizerTableau}, which takes polynomial time in the amount of qubits.
+     * @return whether this circuit only contains Clifford gates
+     */
+    public boolean isClifford(){
+        for(Operation operation : operations)
+            if(!Clifford.isClifford(operation.gate))
+                return false;
+        return true;
+    }
+
+    /**
+     * @return all of the qubits that the gates of this circuit operate on, in the order they are first used
+     */
+    public List<Qubit> qubits(){
+        Set<Qubit> qubits = new LinkedHashSet<>();
+        for(Operation operation : operations)
+            Collections.addAll(qubits, operation.operands);
+        return new ArrayList<>(qubits);
+    }
+
+    /**
+     * @return the amount of gates in this circuit
+     */
+    public int size(){
+        return operations.size();
+    }
+}
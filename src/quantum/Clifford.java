@@ -0,0 +1,182 @@
+package quantum;
+
+import java.util.*;
+
+/**
+ * The {@code Clifford} class recognizes the gates that a {@code StabilizerTableau} can apply. These are the Clifford gates on one
+ * or two qubits, which are exactly the gates that can be built out of the Hadamard gate, the phase gate R(2) and the Controlled-NOT gate,
+ * up to a global phase. Every such gate is found once, by a breadth-first search over the products of those three gates, so that
+ * any gate can then be recognized from its matrix alone, however it was created.
+ */
+class Clifford {
+    /**the Hadamard gate, on the first operand of the operation*/
+    static final int H = 0;
+    /**the phase gate R(2), on the first operand of the operation*/
+    static final int PHASE = 1;
+    /**the Controlled-NOT gate, controlled by the first operand of the operation and targeting the second*/
+    static final int CNOT = 2;
+
+    /**marks gates that were found not to be Clifford gates*/
+    private static final int[][] NONE = new int[0][];
+
+    /**the decompositions of the gates that have been recognized so far, or {@link #NONE}*/
+    private static final Map<QuantumGate,int[][]> decompositions = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * The Clifford gates of each size, which are only searched for when they are first needed.
+     */
+    private static class Groups {
+        static final Map<String,int[][]> ONE = search(1);
+        static final Map<String,int[][]> TWO = search(2);
+    }
+
+    /**
+     * Finds a sequence of Hadamard, phase and Controlled-NOT gates that has the same effect as a gate, up to a global phase.
+     * @param gate the gate to be decomposed
+     * @return the operations to be applied in order, each given as {type, first operand, second operand} where the operands are
+     * indices into the operands of the gate, or {@code null} if the gate is not a Clifford gate on one or two qubits
+     */
+    static int[][] decompose(QuantumGate gate){
+        int[][] word = decompositions.get(gate);
+        if(word == null){
+            word = NONE;
+            if(gate.size == 1 || gate.size == 2){
+                Complex[][] matrix = gate.matrix();
+                int length = matrix.length;
+                double[] real = new double[length*length];
+                double[] imaginary = new double[real.length];
+                for(int x = 0; x < length; x++)
+                    for(int y = 0; y < length; y++){
+                        real[x*length + y] = matrix[x][y].real();
+                        imaginary[x*length + y] = matrix[x][y].imaginary();
+                    }
+                word = (gate.size == 1 ? Groups.ONE : Groups.TWO).getOrDefault(key(real, imaginary), NONE);
+            }
+            decompositions.put(gate, word);
+        }
+        return word == NONE ? null : word;
+    }
+
+    /**
+     * @param gate a gate
+     * @return whether the gate is a Clifford gate on one or two qubits
+     */
+    static boolean isClifford(QuantumGate gate){
+        return decompose(gate) != null;
+    }
+
+    /**
+     * Finds every Clifford gate of a given size by multiplying the generating gates onto those already found.
+     * @param size the amount of qubits, 1 or 2
+     * @return the decomposition of every Clifford gate of this size, keyed by its matrix
+     */
+    private static Map<String,int[][]> search(int size){
+        int length = 1<<size;
+        List<int[]> generators = new ArrayList<>();
+        for(int q = 0; q < size; q++){
+            generators.add(new int[]{H, q, 0});
+            generators.add(new int[]{PHASE, q, 0});
+            for(int t = 0; t < size; t++)
+                if(t != q)
+                    generators.add(new int[]{CNOT, q, t});
+        }
+
+        Map<String,int[][]> found = new HashMap<>();
+        ArrayDeque<double[][]> queue = new ArrayDeque<>();
+        ArrayDeque<int[][]> words = new ArrayDeque<>();
+        double[] identityReal = new double[length*length];
+        for(int x = 0; x < length; x++)
+            identityReal[x*length + x] = 1;
+        double[][] identity = {identityReal, new double[length*length]};
+        found.put(key(identity[0], identity[1]), new int[0][]);
+        queue.add(identity);
+        words.add(new int[0][]);
+
+        while(!queue.isEmpty()){
+            double[][] element = queue.poll();
+            int[][] word = words.poll();
+            for(int[] generator : generators){
+                double[][] product = multiply(generator, element, length);
+                String key = key(product[0], product[1]);
+                if(!found.containsKey(key)){
+                    int[][] next = Arrays.copyOf(word, word.length+1);
+                    next[word.length] = generator;
+                    found.put(key, next);
+                    queue.add(product);
+                    words.add(next);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Applies a generating gate after a matrix.
+     * @param generator the generating gate, as an operation
+     * @param element the real and imaginary parts of the matrix, stored row by row
+     * @param length the dimension of the matrix
+     * @return the real and imaginary parts of the product of the generating gate and the matrix
+     */
+    private static double[][] multiply(int[] generator, double[][] element, int length){
+        double[] real = new double[length*length];
+        double[] imaginary = new double[real.length];
+        int a = 1<<generator[1];
+        int b = 1<<generator[2];
+        double h = 1/Math.sqrt(2);
+        for(int x = 0; x < length; x++)
+            for(int y = 0; y < length; y++){
+                int from = x*length + y;
+                switch(generator[0]){
+                    case H:
+                        real[x*length + y] += (x & a) == 0 ? h*element[0][from] : -h*element[0][from];
+                        imaginary[x*length + y] += (x & a) == 0 ? h*element[1][from] : -h*element[1][from];
+                        real[(x ^ a)*length + y] += h*element[0][from];
+                        imaginary[(x ^ a)*length + y] += h*element[1][from];
+                        break;
+                    case PHASE:
+                        if((x & a) == 0){
+                            real[from] = element[0][from];
+                            imaginary[from] = element[1][from];
+                        }
+                        else{
+                            real[from] = -element[1][from];
+                            imaginary[from] = element[0][from];
+                        }
+                        break;
+                    default:
+                        int row = (x & a) == 0 ? x : x ^ b;
+                        real[row*length + y] = element[0][from];
+                        imaginary[row*length + y] = element[1][from];
+                }
+            }
+        return new double[][]{real, imaginary};
+    }
+
+    /**
+     * Creates a key for a matrix that does not depend on its global phase, by rotating the first entry that is not zero onto
+     * the positive real axis and rounding every entry.
+     * @param real the real parts of the matrix
+     * @param imaginary the imaginary parts of the matrix
+     * @return a key that is equal for any two matrices that differ only by a global phase
+     */
+    private static String key(double[] real, double[] imaginary){
+        double pr = 0;
+        double pi = 0;
+        for(int x = 0; x < real.length; x++){
+            double r = Math.sqrt(real[x]*real[x] + imaginary[x]*imaginary[x]);
+            if(r > 1e-3){
+                pr = real[x]/r;
+                pi = -imaginary[x]/r;
+                break;
+            }
+        }
+
+        StringBuilder key = new StringBuilder();
+        for(int x = 0; x < real.length; x++){
+            long a = Math.round((real[x]*pr - imaginary[x]*pi)*1e6);
+            long b = Math.round((real[x]*pi + imaginary[x]*pr)*1e6);
+            key.append(a).append(',').append(b).append(';');
+        }
+        return key.toString();
+    }
+}
@@ -59,12 +59,36 @@ class Complex {
         double a = 0;
         double b = 0;
         for(Complex c : given){
-            a += c.r*Math.cos(c.theta);
-            b += c.r*Math.sin(c.theta);
+            a += c.real();
+            b += c.imaginary();
         }
+        return fromCartesian(a,b);
+    }
+
+    /**
+     * Creates a complex number from its real and imaginary parts.
+     * @param a the real part of the complex number to be created
+     * @param b the imaginary part of the complex number to be created
+     * @return the complex number a + bi
+     */
+    static Complex fromCartesian(double a, double b){
         return new Complex(Math.sqrt(a*a+b*b),Math.atan2(b,a));
     }
 
+    /**
+     * @return the real part of this complex number
+     */
+    double real(){
+        return r*Math.cos(theta);
+    }
+
+    /**
+     * @return the imaginary part of this complex number
+     */
+    double imaginary(){
+        return r*Math.sin(theta);
+    }
+
     /**
      * Creates a new vector scaled by a factor of {@code scalar}. If the scalar is negative, this will change theta by {@code Math.PI}
      * @param scalar value for which the vector is to be multiplied
@@ -106,14 +130,14 @@ class Complex {
     public boolean equals(Object o){
         if(o instanceof Complex) {
             Complex other = ((Complex) o);
-            double x = r*Math.cos(theta) - other.r*Math.cos(other.theta);
-            double y = r*Math.sin(theta) - other.r*Math.sin(other.theta);
+            double x = real() - other.real();
+            double y = imaginary() - other.imaginary();
             return x*x+y*y<DELTA*DELTA;
         }
         else if(o instanceof Number){
             Number other = ((Number) o);
-            double x = r*Math.cos(theta) - other.doubleValue();
-            double y = r*Math.sin(theta);
+            double x = real() - other.doubleValue();
+            double y = imaginary();
             return x*x+y*y<DELTA*DELTA;
         }
         return false;
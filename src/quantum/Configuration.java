@@ -0,0 +1,122 @@
+package quantum;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The {@code Configuration} class holds the settings that determine how the simulation is carried out.
+ * These settings do not change the probabilities of any outcome, only the way in which they are calculated.
+ */
+public class Configuration {
+    private static volatile SplitPolicy splitPolicy = SplitPolicy.EAGER;
+    private static volatile int parallelThreshold = 1<<16;
+    private static volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+    private static volatile boolean vectorized = true;
+    private static volatile int sparseThreshold = 1<<12;
+    private static volatile RandomSource randomSource = RandomSource.THREAD_LOCAL;
+
+    /**
+     * @return the policy that determines when entangled qubits are split apart
+     */
+    public static SplitPolicy getSplitPolicy(){
+        return splitPolicy;
+    }
+
+    /**
+     * Changes when entangled qubits are split apart. This takes effect on the next gate or measurement.
+     * @param policy the new {@code SplitPolicy}
+     */
+    public static void setSplitPolicy(SplitPolicy policy){
+        if(policy == null)
+            throw new IllegalArgumentException("policy must not be null");
+        splitPolicy = policy;
+    }
+
+    /**
+     * @return the amount of coefficients that an operation must visit before it is split across the pool
+     */
+    public static int getParallelThreshold(){
+        return parallelThreshold;
+    }
+
+    /**
+     * Changes the amount of coefficients that an operation must visit before it is split across the pool.
+     * Operations below this size run on the calling thread, and {@code Integer.MAX_VALUE} disables parallel execution altogether.
+     * @param threshold the new threshold, which must be positive
+     */
+    public static void setParallelThreshold(int threshold){
+        if(threshold <= 0)
+            throw new IllegalArgumentException("threshold must be positive");
+        parallelThreshold = threshold;
+    }
+
+    /**
+     * @return the pool that operations on large states are split across
+     */
+    public static ForkJoinPool getPool(){
+        return pool;
+    }
+
+    /**
+     * Changes the pool that operations on large states are split across. This is the common pool by default.
+     * @param pool the new {@code ForkJoinPool}
+     */
+    public static void setPool(ForkJoinPool pool){
+        if(pool == null)
+            throw new IllegalArgumentException("pool must not be null");
+        Configuration.pool = pool;
+    }
+
+    /**
+     * @return whether gates are applied with SIMD instructions through the Vector API
+     */
+    public static boolean isVectorized(){
+        return vectorized && Kernels.VECTOR != null;
+    }
+
+    /**
+     * Chooses whether gates are applied with SIMD instructions through the Vector API. This is enabled by default, but only
+     * takes effect when the jdk.incubator.vector module is present, which requires running with {@code --add-modules jdk.incubator.vector}.
+     * @param enabled whether the Vector API should be used where it is available
+     */
+    public static void setVectorized(boolean enabled){
+        vectorized = enabled;
+    }
+
+    /**
+     * @return the largest amount of nonzero coefficients with which a state is stored sparsely
+     */
+    public static int getSparseThreshold(){
+        return sparseThreshold;
+    }
+
+    /**
+     * Changes the largest amount of nonzero coefficients with which a state is stored sparsely, as only its nonzero coefficients,
+     * rather than as one coefficient for every basis state. States such as basis states, and those left behind by measurement,
+     * are converted automatically, and are converted back once a gate gives them more nonzero coefficients than this.
+     * A threshold of 0 stores every state densely.
+     * @param threshold the new threshold, which must not be negative
+     */
+    public static void setSparseThreshold(int threshold){
+        if(threshold < 0)
+            throw new IllegalArgumentException("threshold must not be negative");
+        sparseThreshold = threshold;
+    }
+
+    /**
+     * @return the source of the random numbers that decide measurements and samples
+     */
+    public static RandomSource getRandomSource(){
+        return randomSource;
+    }
+
+    /**
+     * Changes the source of the random numbers that decide measurements and samples. This is {@link RandomSource#THREAD_LOCAL} by
+     * default, and a source from {@link RandomSource#seeded(long)} makes runs repeatable.
+     * @param source the new {@code RandomSource}
+     */
+    public static void setRandomSource(RandomSource source){
+        if(source == null)
+            throw new IllegalArgumentException("source must not be null");
+        randomSource = source;
+    }
+}
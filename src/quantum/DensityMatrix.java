@@ -0,0 +1,284 @@
+package quantum;
+
+import java.util.*;
+
+/**
+ * The {@code DensityMatrix} class is a {@code Backend} that stores the density matrix ρ of its qubits, rather than a pure state,
+ * so that the effect of noise can be simulated exactly. A gate U is applied as U ρ U†, by treating the 4<sup>n</sup> entries of ρ
+ * as the coefficients of 2n qubits: the row of each entry is given by its n low bits, and its column by the n high bits. U is then
+ * applied to the row bits, and the conjugate of U to the column bits, with the same kernels that apply gates to a {@code QuantumState}.
+ * A gate of one qubit is applied to its row and column bits at once, as a single 4x4 matrix into which the noise is also folded, so
+ * that each pass over ρ does as much work as possible.
+ *
+ * <p>
+ *     A {@code NoiseChannel} can be applied to any qubit, or set with {@link #setNoise(NoiseChannel)} to act on every operand after
+ *     each gate:
+ * </p>
+ * <pre>{@code
+ * DensityMatrix rho = new DensityMatrix(circuit.qubits());
+ * rho.setNoise(NoiseChannel.depolarizing(0.01));
+ * circuit.execute(rho);
+ * int[] results = rho.sample(register, 1000);
+ * }</pre>
+ */
+public class DensityMatrix implements Backend {
+    /**the most qubits that a density matrix can hold, as it has two bits per qubit*/
+    private static final int MAX_QUBITS = 15;
+
+    /**the bit of the row and column indices that belongs to each qubit*/
+    private final Map<Qubit,Integer> bits;
+    /**the amount of qubits*/
+    private final int n;
+    /**the real parts of the entries of ρ, where the entry at (row, column) is stored at {@code row | column<<n}*/
+    private final double[] real;
+    /**the imaginary parts of the entries of ρ, in the same order as {@link #real}*/
+    private final double[] imaginary;
+    /**the simulator that owns the qubits, whose random source decides measurements, or {@code null}*/
+    private final Simulator simulator;
+    /**the channel that acts on each operand after every gate, or {@code null}*/
+    private NoiseChannel noise;
+
+    /**
+     * Creates a density matrix for a set of qubits, starting in the basis state that they are in.
+     * @param qubits the qubits that gates will be applied to, each of which must be in |0&gt; or |1&gt;
+     */
+    public DensityMatrix(Collection<Qubit> qubits){
+        simulator = Simulator.of(qubits);
+        bits = new HashMap<>();
+        int state = 0;
+        for(Qubit q : qubits)
+            if(bits.putIfAbsent(q, bits.size()) == null){
+                double p = q.probabilityOf(true);
+                if(p > 1e-9 && Math.abs(p - 1) > 1e-9)
+                    throw new IllegalArgumentException("Qubits must be in a basis state");
+                if(p > 0.5)
+                    state |= 1<<bits.get(q);
+            }
+
+        n = bits.size();
+        if(n > MAX_QUBITS)
+            throw new IllegalArgumentException("Too many qubits for a density matrix");
+        real = new double[1<<(2*n)];
+        imaginary = new double[real.length];
+        real[state | state<<n] = 1;
+    }
+
+    /**
+     * Creates a density matrix for a set of qubits, starting in the basis state that they are in.
+     * @param qubits the qubits that gates will be applied to, each of which must be in |0&gt; or |1&gt;
+     */
+    public DensityMatrix(Qubit... qubits){
+        this(Arrays.asList(qubits));
+    }
+
+    /**
+     * Chooses a channel that acts on each operand of every gate, after the gate is applied.
+     * @param channel the {@code NoiseChannel}, or {@code null} for gates without noise
+     */
+    public synchronized void setNoise(NoiseChannel channel){
+        noise = channel;
+    }
+
+    /**
+     * Applies a gate to a set of qubits, as U ρ U†, followed by the noise channel on each operand if one is set.
+     * @param gate the gate to be applied
+     * @param operands the operand qubits, of the same amount as the size of the gate
+     */
+    @Override
+    public synchronized void apply(QuantumGate gate, Qubit... operands){
+        if(operands.length != gate.size)
+            throw new IllegalArgumentException("Invalid number of operands");
+
+        if(gate.size == 1){
+            applySingle(gate, bit(operands[0]));
+            return;
+        }
+
+        int[] rows = new int[operands.length];
+        int[] columns = new int[operands.length];
+        for(int x = 0; x < operands.length; x++){
+            rows[x] = bit(operands[x]);
+            columns[x] = rows[x] + n;
+        }
+
+        QuantumState.apply(real, imaginary, gate.target, rows);
+        QuantumState.apply(real, imaginary, conjugate(gate.target), columns);
+
+        if(noise != null)
+            for(Qubit q : operands)
+                apply(noise, q);
+    }
+
+    /**
+     * Applies a gate of one qubit and the noise that follows it in a single pass over ρ, as the 4x4 matrix that acts on the row and
+     * column bits of the qubit at once.
+     */
+    private void applySingle(QuantumGate gate, int b){
+        Complex[][] m = gate.matrix();
+        double[] kr = new double[4];
+        double[] ki = new double[4];
+        for(int x = 0; x < 4; x++){
+            kr[x] = m[x >> 1][x & 1].real();
+            ki[x] = m[x >> 1][x & 1].imaginary();
+        }
+
+        double[] sr = new double[16];
+        double[] si = new double[16];
+        NoiseChannel.addSuperoperator(kr, ki, sr, si);
+        if(noise != null){
+            double[] nr = noise.superReal, ni = noise.superImaginary;
+            double[] pr = new double[16];
+            double[] pi = new double[16];
+            for(int x = 0; x < 4; x++)
+                for(int y = 0; y < 4; y++)
+                    for(int z = 0; z < 4; z++){
+                        pr[x*4 + y] += nr[x*4 + z]*sr[z*4 + y] - ni[x*4 + z]*si[z*4 + y];
+                        pi[x*4 + y] += nr[x*4 + z]*si[z*4 + y] + ni[x*4 + z]*sr[z*4 + y];
+                    }
+            sr = pr;
+            si = pi;
+        }
+        QuantumState.applyTwo(real, imaginary, sr, si, b, b + n, 0);
+    }
+
+    /**
+     * Applies a noise channel to a qubit, as Σ K ρ K† over its Kraus operators K.
+     * @param channel the {@code NoiseChannel} to be applied
+     * @param qubit the qubit that it acts on
+     */
+    public synchronized void apply(NoiseChannel channel, Qubit qubit){
+        int b = bit(qubit);
+        QuantumState.applyTwo(real, imaginary, channel.superReal, channel.superImaginary, b, b + n, 0);
+    }
+
+    /**
+     * Collapses a {@code Qubit} to either |0&gt; or |1&gt;, within this density matrix
+     * @param qubit the {@code Qubit} to be measured
+     * @return the result of this collapse
+     */
+    @Override
+    public synchronized boolean measure(Qubit qubit){
+        int b = bit(qubit);
+        double one = probabilityOf(b);
+        boolean result = Simulator.random(simulator).nextDouble() < one;
+        double constant = 1 / (result ? one : 1 - one);
+        final int row = 1<<b;
+        final int column = 1<<(b + n);
+        final boolean outcome = result;
+        Parallel.forRange(real.length, 1, (from, to) -> {
+            for(int i = from; i < to; i++)
+                if(((i & row) != 0) == outcome && ((i & column) != 0) == outcome){
+                    real[i] *= constant;
+                    imaginary[i] *= constant;
+                }
+                else{
+                    real[i] = 0;
+                    imaginary[i] = 0;
+                }
+        });
+        return result;
+    }
+
+    /**
+     * Randomly chooses many states of a register at once, without collapse. The probabilities of all basis states are found once
+     * from the diagonal of ρ, after which each sample is a binary search.
+     * @param qr the register to be sampled
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states of the register, each chosen independently
+     */
+    @Override
+    public synchronized int[] sample(QubitRegister qr, int shots){
+        qr.checkWidth(Integer.SIZE);
+        return BitUtils.narrow(sampleLong(qr, shots));
+    }
+
+    /**
+     * Randomly chooses many states of a register of up to 64 qubits at once, without collapse, as {@link #sample(QubitRegister, int)} does.
+     * @param qr the register to be sampled
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states of the register, each chosen independently
+     */
+    @Override
+    public synchronized long[] sampleLong(QubitRegister qr, int shots){
+        qr.checkWidth(Long.SIZE);
+        int[] positions = new int[qr.qubits.length];
+        for(int x = 0; x < positions.length; x++)
+            positions[x] = bit(qr.qubits[x]);
+
+        double[] cumulative = new double[1<<n];
+        double total = 0;
+        for(int s = 0; s < cumulative.length; s++)
+            cumulative[s] = total += Math.max(0, real[s | s<<n]);
+
+        double[] uniforms = new double[shots];
+        Simulator.random(simulator).nextDoubles(uniforms);
+        long[] result = new long[shots];
+        for(int shot = 0; shot < shots; shot++){
+            int s = Arrays.binarySearch(cumulative, uniforms[shot]*total);
+            s = Math.min(s < 0 ? -s-1 : s, cumulative.length-1);
+            for(int x = 0; x < positions.length; x++)
+                if((s >>> positions[x] & 1) != 0)
+                    result[shot] |= 1L<<x;
+        }
+        return result;
+    }
+
+    /**
+     * Finds the probability of a given basis state of a {@code Qubit} if it were to collapse.
+     * @param qubit the {@code Qubit} to be tested
+     * @param state basis to test for the probability of
+     * @return the probability of this basis state occurring.
+     */
+    public synchronized double probabilityOf(Qubit qubit, boolean state){
+        double one = probabilityOf(bit(qubit));
+        return state ? one : 1 - one;
+    }
+
+    /**
+     * Finds the purity tr(ρ²) of the state, which is 1 for a pure state and falls towards 1/2<sup>n</sup> as noise mixes it.
+     * @return the purity of the state
+     */
+    public synchronized double purity(){
+        return Parallel.sum(real.length, 1, (from, to) -> {
+            double sum = 0;
+            for(int i = from; i < to; i++)
+                sum += real[i]*real[i] + imaginary[i]*imaginary[i];
+            return sum;
+        });
+    }
+
+    private int bit(Qubit qubit){
+        Integer bit = bits.get(qubit);
+        if(bit == null)
+            throw new IllegalArgumentException("Qubit is not part of this density matrix");
+        return bit;
+    }
+
+    /**
+     * @return the sum of the diagonal entries of ρ in which a bit is set
+     */
+    private double probabilityOf(int b){
+        double one = 0;
+        for(int s = 0; s < 1<<n; s++)
+            if((s >>> b & 1) != 0)
+                one += real[s | s<<n];
+        return one;
+    }
+
+    /**
+     * Creates the gate whose matrix is the complex conjugate of that of a gate, which is applied to the column bits.
+     * @param gate a gate without controls
+     * @return the conjugate of the gate
+     */
+    private static QuantumGate conjugate(QuantumGate gate){
+        if(gate instanceof PermutationGate)
+            return gate;
+        if(gate instanceof DiagonalGate)
+            return gate.inverse();
+
+        double[] imaginary = new double[gate.imaginary.length];
+        for(int x = 0; x < imaginary.length; x++)
+            imaginary[x] = -gate.imaginary[x];
+        return new QuantumGate(gate.real, imaginary);
+    }
+}
@@ -0,0 +1,118 @@
+package quantum;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * The {@code DiagonalGate} class represents a gate whose matrix is diagonal, meaning that it only changes the phase of each basis state.
+ * Instead of a full matrix, it stores a single phase factor per basis state, and is applied as one multiplication per coefficient.
+ */
+public class DiagonalGate extends QuantumGate {
+    /**the real parts of the phase factor of each basis state*/
+    final double[] phaseReal;
+    /**the imaginary parts of the phase factor of each basis state*/
+    final double[] phaseImaginary;
+
+    /**
+     * Creates a diagonal gate that shifts the phase of each basis state by a given amount.
+     * @param phases the phase shift of each basis state from |0⟩⊗n to |1⟩⊗n, in radians. The length of this must be a power of 2.
+     */
+    public DiagonalGate(double... phases){
+        this(cos(phases), sin(phases));
+    }
+
+    /**
+     * Creates a diagonal gate of a given size, with a phase shift determined by a function of the basis state.
+     * The function is evaluated once for each basis state.
+     * @param size the amount of qubits that this gate operates on
+     * @param phase function from a basis state to the phase shift of that basis state, in radians
+     */
+    public DiagonalGate(int size, IntToDoubleFunction phase){
+        this(phases(size, phase));
+    }
+
+    /**
+     * Creates a diagonal gate from the Cartesian form of its phase factors. Each phase factor should have an absolute square of 1.
+     * @param phaseReal the real parts of the phase factor of each basis state
+     * @param phaseImaginary the imaginary parts of the phase factor of each basis state
+     */
+    DiagonalGate(double[] phaseReal, double[] phaseImaginary){
+        super(sizeOf(phaseReal.length));
+        this.phaseReal = phaseReal;
+        this.phaseImaginary = phaseImaginary;
+        assert isUnitary();
+    }
+
+    /**
+     * Creates the full matrix of this gate, with the phase factors along its diagonal.
+     * @return the matrix of this gate
+     */
+    @Override
+    Complex[][] matrix(){
+        Complex[][] result = new Complex[phaseReal.length][phaseReal.length];
+        for(int x = 0; x < result.length; x++)
+            for(int y = 0; y < result.length; y++)
+                result[x][y] = x==y ? Complex.fromCartesian(phaseReal[x],phaseImaginary[x]) : Complex.ZERO;
+        return result;
+    }
+
+    /**
+     * Creates the inverse of this gate, which shifts the phase of every basis state in the opposite direction.
+     * @return The inverse of this gate.
+     */
+    @Override
+    public QuantumGate inverse(){
+        double[] conjugate = new double[phaseImaginary.length];
+        for(int x = 0; x < conjugate.length; x++)
+            conjugate[x] = -phaseImaginary[x];
+        return new DiagonalGate(phaseReal, conjugate);
+    }
+
+    /**
+     * Determines whether this {@code DiagonalGate} is unitary, which is the case iff every phase factor has an absolute square of 1,
+     * up to rounding.
+     * @return whether this {@code DiagonalGate} is unitary or not.
+     */
+    @Override
+    public boolean isUnitary(){
+        for(int x = 0; x < phaseReal.length; x++)
+            if(Math.abs(phaseReal[x]*phaseReal[x] + phaseImaginary[x]*phaseImaginary[x] - 1) > 1e-9)
+                return false;
+        return true;
+    }
+
+    /**
+     * Tests whether a basis state is left unchanged by this gate
+     * @param state the basis state to be tested
+     * @return {@code true} if the phase factor of this basis state is exactly 1
+     */
+    boolean isIdentity(int state){
+        return phaseReal[state] == 1 && phaseImaginary[state] == 0;
+    }
+
+    private static int sizeOf(int length){
+        if((length & (length - 1)) != 0 || length == 0)
+            throw new IllegalArgumentException("Phases not of proper dimensions");
+        return BitUtils.log2(length)-1;
+    }
+
+    private static double[] phases(int size, IntToDoubleFunction phase){
+        double[] phases = new double[1<<size];
+        for(int x = 0; x < phases.length; x++)
+            phases[x] = phase.applyAsDouble(x);
+        return phases;
+    }
+
+    private static double[] cos(double[] phases){
+        double[] result = new double[phases.length];
+        for(int x = 0; x < phases.length; x++)
+            result[x] = Math.cos(phases[x]);
+        return result;
+    }
+
+    private static double[] sin(double[] phases){
+        double[] result = new double[phases.length];
+        for(int x = 0; x < phases.length; x++)
+            result[x] = Math.sin(phases[x]);
+        return result;
+    }
+}
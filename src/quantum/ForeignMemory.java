@@ -0,0 +1,29 @@
+package quantum;
+
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The {@code ForeignMemory} class allocates buffers through the Foreign Memory API, as segments of a single shared
+ * {@code ResourceScope}. Closing it frees all of them at once, and any later access to them throws an {@code IllegalStateException}
+ * rather than reading freed memory. This class is only loaded when the jdk.incubator.foreign module is present.
+ */
+class ForeignMemory extends NativeMemory {
+    /**the alignment of each segment, which is the size of a cache line*/
+    private static final long ALIGNMENT = 64;
+
+    private final ResourceScope scope = ResourceScope.newSharedScope();
+
+    @Override
+    ByteBuffer allocate(int bytes){
+        return MemorySegment.allocateNative(bytes, ALIGNMENT, scope).asByteBuffer().order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    void free(){
+        scope.close();
+    }
+}
@@ -0,0 +1,172 @@
+package quantum;
+
+import java.util.*;
+
+/**
+ * The {@code Fusion} class merges runs of consecutive gates of a {@code Circuit} that together act on only a few qubits into single gates.
+ * Each gate applied to a large {@code QuantumState} is a full pass over its coefficients, so merging gates cuts down the amount
+ * of passes. Runs made only of diagonal gates are merged into a {@code DiagonalGate}, and any other run into a matrix over all of
+ * its qubits. A run of a single gate is left as it is, keeping whatever structure that gate has.
+ */
+class Fusion {
+    private Fusion(){}
+
+    /**
+     * Creates a circuit with the same effect as a given circuit, but with runs of consecutive gates merged.
+     * @param circuit the circuit to be fused
+     * @param width the largest amount of qubits that a merged gate may act on
+     * @return a new {@code Circuit} with the merged gates
+     */
+    static Circuit fuse(Circuit circuit, int width){
+        if(width < 1)
+            throw new IllegalArgumentException("width must be at least 1");
+
+        Circuit result = new Circuit();
+        List<Circuit.Operation> run = new ArrayList<>();
+        List<Qubit> qubits = new ArrayList<>();
+
+        for(Circuit.Operation operation : circuit.operations){
+            List<Qubit> union = new ArrayList<>(qubits);
+            for(Qubit q : operation.operands)
+                if(!union.contains(q))
+                    union.add(q);
+
+            if(union.size() > width && !run.isEmpty()){
+                flush(result, run, qubits);
+                run.clear();
+                union = new ArrayList<>(Arrays.asList(operation.operands));
+            }
+            run.add(operation);
+            qubits = union;
+        }
+        if(!run.isEmpty())
+            flush(result, run, qubits);
+
+        return result;
+    }
+
+    /**
+     * Adds the merged gate of a run to a circuit
+     * @param result the circuit to be added to
+     * @param run the consecutive gates to be merged
+     * @param qubits every qubit that the run acts on, which become the operands of the merged gate
+     */
+    private static void flush(Circuit result, List<Circuit.Operation> run, List<Qubit> qubits){
+        if(run.size() == 1){
+            result.operations.add(run.get(0));
+            return;
+        }
+
+        Qubit[] operands = qubits.toArray(new Qubit[0]);
+        boolean diagonal = true;
+        for(Circuit.Operation operation : run)
+            diagonal &= operation.gate.target instanceof DiagonalGate;
+
+        result.add(diagonal ? diagonal(run, qubits) : dense(run, qubits), operands);
+    }
+
+    /**
+     * Multiplies together the phase factors of a run of diagonal gates
+     * @param run the consecutive gates to be merged, all of which have a {@code DiagonalGate} as target
+     * @param qubits every qubit that the run acts on
+     * @return a {@code DiagonalGate} over the qubits with the effect of the whole run
+     */
+    private static DiagonalGate diagonal(List<Circuit.Operation> run, List<Qubit> qubits){
+        double[] real = new double[1<<qubits.size()];
+        double[] imaginary = new double[real.length];
+        Arrays.fill(real, 1);
+
+        for(Circuit.Operation operation : run){
+            DiagonalGate gate = (DiagonalGate) operation.gate.target;
+            int[] positions = positions(operation, qubits);
+            for(int state = 0; state < real.length; state++){
+                int local = 0;
+                for(int x = 0; x < positions.length; x++)
+                    if(BitUtils.bit(state, positions[x]))
+                        local |= 1<<x;
+                //the controls are the highest bits of the gate's basis state, and the phase only applies if they are all set
+                if(local>>>gate.size != (1<<operation.gate.controls)-1)
+                    continue;
+                local &= (1<<gate.size)-1;
+
+                double a = real[state], b = imaginary[state];
+                real[state] = a*gate.phaseReal[local] - b*gate.phaseImaginary[local];
+                imaginary[state] = a*gate.phaseImaginary[local] + b*gate.phaseReal[local];
+            }
+        }
+        return new DiagonalGate(real, imaginary);
+    }
+
+    /**
+     * Multiplies together the matrices of a run of gates
+     * @param run the consecutive gates to be merged
+     * @param qubits every qubit that the run acts on
+     * @return a {@code QuantumGate} over the qubits with the effect of the whole run
+     */
+    private static QuantumGate dense(List<Circuit.Operation> run, List<Qubit> qubits){
+        int length = 1<<qubits.size();
+        double[] real = new double[length*length];
+        double[] imaginary = new double[length*length];
+        for(int x = 0; x < length; x++)
+            real[x*length + x] = 1;
+
+        for(Circuit.Operation operation : run){
+            Complex[][] matrix = operation.gate.matrix();
+            double[] mr = new double[matrix.length*matrix.length];
+            double[] mi = new double[mr.length];
+            for(int x = 0; x < matrix.length; x++)
+                for(int y = 0; y < matrix.length; y++){
+                    mr[x*matrix.length + y] = matrix[x][y].real();
+                    mi[x*matrix.length + y] = matrix[x][y].imaginary();
+                }
+
+            int[] positions = positions(operation, qubits);
+            int[] offsets = new int[matrix.length];
+            int operandBits = 0;
+            for(int x = 0; x < positions.length; x++)
+                operandBits |= 1<<positions[x];
+            for(int i = 0; i < offsets.length; i++)
+                for(int x = 0; x < positions.length; x++)
+                    if(BitUtils.bit(i, x))
+                        offsets[i] |= 1<<positions[x];
+
+            //each column of the merged matrix is the image of a basis state, and the gate is applied to it as to a state
+            double[] inReal = new double[offsets.length];
+            double[] inImaginary = new double[offsets.length];
+            double[] outReal = new double[offsets.length];
+            double[] outImaginary = new double[offsets.length];
+            for(int column = 0; column < length; column++)
+                for(int base = 0; base < length; base = ((base|operandBits)+1)&~operandBits){
+                    for(int i = 0; i < offsets.length; i++){
+                        inReal[i] = real[(base|offsets[i])*length + column];
+                        inImaginary[i] = imaginary[(base|offsets[i])*length + column];
+                    }
+                    for(int x = 0; x < offsets.length; x++){
+                        double a = 0;
+                        double b = 0;
+                        for(int y = 0; y < offsets.length; y++){
+                            a += mr[x*offsets.length + y]*inReal[y] - mi[x*offsets.length + y]*inImaginary[y];
+                            b += mr[x*offsets.length + y]*inImaginary[y] + mi[x*offsets.length + y]*inReal[y];
+                        }
+                        outReal[x] = a;
+                        outImaginary[x] = b;
+                    }
+                    for(int i = 0; i < offsets.length; i++){
+                        real[(base|offsets[i])*length + column] = outReal[i];
+                        imaginary[(base|offsets[i])*length + column] = outImaginary[i];
+                    }
+                }
+        }
+        return new QuantumGate(real, imaginary);
+    }
+
+    /**
+     * @return the position of each operand of an operation within a list of qubits
+     */
+    private static int[] positions(Circuit.Operation operation, List<Qubit> qubits){
+        int[] positions = new int[operation.operands.length];
+        for(int x = 0; x < positions.length; x++)
+            positions[x] = qubits.indexOf(operation.operands[x]);
+        return positions;
+    }
+}
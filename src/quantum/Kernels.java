@@ -0,0 +1,131 @@
+package quantum;
+
+/**
+ * The {@code Kernels} class holds the innermost loops of the gates of one and two qubits, and of diagonal gates. The coefficients
+ * of a {@code QuantumState} are visited in blocks, each of which is made of runs of consecutive indices, so that a subclass can
+ * replace these loops with SIMD instructions. Blocks start at every index in which the bits of {@code skip} are 0, and a range of
+ * blocks is given by the position of its blocks within that order.
+ */
+class Kernels {
+    /**the loops written in plain Java, which are always available*/
+    static final Kernels SCALAR = new Kernels();
+    /**the loops written with the Vector API, or {@code null} if the jdk.incubator.vector module is not present*/
+    static final Kernels VECTOR = loadVector();
+
+    /**
+     * @return the kernels to be used, according to the {@code Configuration}
+     */
+    static Kernels get(){
+        return VECTOR != null && Configuration.isVectorized() ? VECTOR : SCALAR;
+    }
+
+    private static Kernels loadVector(){
+        if(!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+            return null;
+        try{
+            return (Kernels) Class.forName("quantum.VectorKernels").getDeclaredConstructor().newInstance();
+        }
+        catch(ReflectiveOperationException | LinkageError e){
+            return null;
+        }
+    }
+
+    /**
+     * Applies a 2x2 matrix to pairs of coefficients, where the second of each pair is {@code stride} after the first.
+     * @param real the real parts of the coefficients
+     * @param imaginary the imaginary parts of the coefficients
+     * @param mr the real parts of the matrix, stored row by row
+     * @param mi the imaginary parts of the matrix, stored row by row
+     * @param stride the distance between the two coefficients of each pair
+     * @param controls a mask of bits that are set in every visited index
+     * @param run the length of each run of consecutive indices
+     * @param skip the bits that blocks do not iterate over, which must include {@code stride}, {@code controls} and {@code run-1}
+     * @param from the first block to be visited
+     * @param to one past the last block to be visited
+     */
+    void single(double[] real, double[] imaginary, double[] mr, double[] mi, int stride, int controls, int run, int skip, int from, int to){
+        final double m00r = mr[0], m00i = mi[0];
+        final double m01r = mr[1], m01i = mi[1];
+        final double m10r = mr[2], m10i = mi[2];
+        final double m11r = mr[3], m11i = mi[3];
+
+        for(int k = from, block = BitUtils.deposit(from, ~skip); k < to; k++, block = ((block|skip)+1)&~skip)
+            for(int i = block|controls; i < (block|controls)+run; i++){
+                final int j = i+stride;
+                final double ar = real[i], ai = imaginary[i];
+                final double br = real[j], bi = imaginary[j];
+                real[i] = m00r*ar - m00i*ai + m01r*br - m01i*bi;
+                imaginary[i] = m00r*ai + m00i*ar + m01r*bi + m01i*br;
+                real[j] = m10r*ar - m10i*ai + m11r*br - m11i*bi;
+                imaginary[j] = m10r*ai + m10i*ar + m11r*bi + m11i*br;
+            }
+    }
+
+    /**
+     * Applies a 4x4 matrix to groups of four coefficients, each {@code offsets[i]} after the first index of the group.
+     * @param real the real parts of the coefficients
+     * @param imaginary the imaginary parts of the coefficients
+     * @param mr the real parts of the matrix, stored row by row
+     * @param mi the imaginary parts of the matrix, stored row by row
+     * @param offsets the position of each of the four basis states of the gate, relative to the first
+     * @param controls a mask of bits that are set in every visited index
+     * @param run the length of each run of consecutive indices
+     * @param skip the bits that blocks do not iterate over, which must include the offsets, {@code controls} and {@code run-1}
+     * @param from the first block to be visited
+     * @param to one past the last block to be visited
+     */
+    void two(double[] real, double[] imaginary, double[] mr, double[] mi, int[] offsets, int controls, int run, int skip, int from, int to){
+        final int o1 = offsets[1], o2 = offsets[2], o3 = offsets[3];
+        double[] inReal = new double[4];
+        double[] inImaginary = new double[4];
+
+        for(int k = from, block = BitUtils.deposit(from, ~skip); k < to; k++, block = ((block|skip)+1)&~skip)
+            for(int i = block|controls; i < (block|controls)+run; i++){
+                inReal[0] = real[i];
+                inImaginary[0] = imaginary[i];
+                inReal[1] = real[i+o1];
+                inImaginary[1] = imaginary[i+o1];
+                inReal[2] = real[i+o2];
+                inImaginary[2] = imaginary[i+o2];
+                inReal[3] = real[i+o3];
+                inImaginary[3] = imaginary[i+o3];
+                for(int x = 0; x < 4; x++){
+                    double a = 0;
+                    double b = 0;
+                    for(int y = 0; y < 4; y++){
+                        a += mr[x*4+y]*inReal[y] - mi[x*4+y]*inImaginary[y];
+                        b += mr[x*4+y]*inImaginary[y] + mi[x*4+y]*inReal[y];
+                    }
+                    real[i+offsets[x]] = a;
+                    imaginary[i+offsets[x]] = b;
+                }
+            }
+    }
+
+    /**
+     * Multiplies runs of coefficients by phase factors, one for each of the {@code count} offsets.
+     * @param real the real parts of the coefficients
+     * @param imaginary the imaginary parts of the coefficients
+     * @param pr the real parts of the phase factor of each offset
+     * @param pi the imaginary parts of the phase factor of each offset
+     * @param offsets the position of the runs that are multiplied, relative to the start of a block
+     * @param count the amount of offsets
+     * @param controls a mask of bits that are set in every visited index
+     * @param run the length of each run of consecutive indices
+     * @param skip the bits that blocks do not iterate over, which must include the offsets, {@code controls} and {@code run-1}
+     * @param from the first block to be visited
+     * @param to one past the last block to be visited
+     */
+    void diagonal(double[] real, double[] imaginary, double[] pr, double[] pi, int[] offsets, int count, int controls, int run, int skip, int from, int to){
+        for(int k = from, block = BitUtils.deposit(from, ~skip); k < to; k++, block = ((block|skip)+1)&~skip)
+            for(int x = 0; x < count; x++){
+                final double r = pr[x], t = pi[x];
+                final int start = block|controls|offsets[x];
+                for(int i = start; i < start+run; i++){
+                    final double ar = real[i], ai = imaginary[i];
+                    real[i] = r*ar - t*ai;
+                    imaginary[i] = r*ai + t*ar;
+                }
+            }
+    }
+}
@@ -0,0 +1,107 @@
+package quantum;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * The {@code MappedMemory} class allocates buffers as slices of large regions of a file, which are mapped one after another, so that a
+ * state can be larger than the memory of the machine, and the operating system pages it to and from the disk as it is used. The file is created empty, grows as
+ * buffers are allocated, and is deleted when this is closed or the JVM exits. The mappings themselves are only released once the
+ * buffers are garbage collected.
+ */
+class MappedMemory extends NativeMemory {
+    /**the largest region of the file that is mapped at once, out of which many buffers are sliced*/
+    private static final int REGION = 1<<30;
+    /**
+     * the most regions that are mapped, which is well below the default limit of 65530 mappings of a Linux process, and enough for the
+     * largest {@code OffHeapState} to be mapped once and then copied once by forking
+     */
+    private static final int MAX_REGIONS = 1<<15;
+
+    private final FileChannel channel;
+    /**the position in the file of the end of the last region*/
+    private long position;
+    /**the amount of regions that have been mapped*/
+    private int regions;
+    /**the rest of the last region, out of which the next buffers are sliced*/
+    private ByteBuffer region = ByteBuffer.allocate(0);
+
+    /**
+     * @param file the file to hold the buffers, which is replaced if it exists
+     */
+    MappedMemory(Path file){
+        try{
+            channel = FileChannel.open(file, CREATE, TRUNCATE_EXISTING, READ, WRITE, DELETE_ON_CLOSE);
+        }
+        catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Slices a buffer out of the last region of the file, after mapping a new region if the last one is full. Each new region is as
+     * large as everything mapped before it, up to {@link #REGION}, so that a few buffers take little of the file, and many buffers
+     * take few regions.
+     */
+    @Override
+    synchronized ByteBuffer allocate(int bytes){
+        if(region.remaining() < bytes)
+            map((int)Math.min(REGION, Math.max(bytes, position)));
+        ByteBuffer buffer = region.slice(region.position(), bytes).order(ByteOrder.nativeOrder());
+        region.position(region.position() + bytes);
+        return buffer;
+    }
+
+    /**
+     * Slices the buffers out of regions of the file one after the other, so that they lie in the file in the order they are given,
+     * and a pass over them in that order reads the file from start to end.
+     * @throws IllegalArgumentException if the buffers would need more regions than can be mapped, before any of them is mapped
+     */
+    @Override
+    synchronized ByteBuffer[] allocate(int count, int bytes){
+        int perRegion = Math.max(1, REGION / bytes);
+        if(regions + (count + perRegion - 1L) / perRegion > MAX_REGIONS)
+            throw new IllegalArgumentException("Too many regions of the file to be mapped");
+
+        ByteBuffer[] buffers = new ByteBuffer[count];
+        for(int x = 0; x < count; x += perRegion){
+            map(Math.min(perRegion, count - x) * bytes);
+            for(int y = x; y < Math.min(count, x + perRegion); y++)
+                buffers[y] = allocate(bytes);
+        }
+        return buffers;
+    }
+
+    /**
+     * Maps the next region of the file. The file is extended with zeros to fit it, which takes no space on most file systems until the
+     * region is written.
+     */
+    private void map(int bytes){
+        if(regions == MAX_REGIONS)
+            throw new IllegalStateException("Too many regions of the file to be mapped");
+        try{
+            region = channel.map(FileChannel.MapMode.READ_WRITE, position, bytes);
+        }
+        catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+        position += bytes;
+        regions++;
+    }
+
+    @Override
+    void free(){
+        try{
+            channel.close();
+        }
+        catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,527 @@
+package quantum;
+
+import java.util.*;
+
+/**
+ * The {@code MatrixProductState} class is a {@code Backend} that stores the state of its qubits as a chain of small tensors, one per
+ * qubit, instead of one coefficient per basis state. The tensors are joined by bonds, whose dimension grows with the entanglement
+ * across them, so that the memory needed is linear in the amount of qubits for states with little entanglement, such as those
+ * produced by shallow circuits. Gates on one and two qubits are applied by contracting the tensors that they act on and splitting them
+ * apart again with a singular value decomposition.
+ *
+ * <p>
+ *     Bonds are truncated to a maximum dimension, keeping the largest singular values. The total weight of the discarded singular
+ *     values is reported by {@link #truncationError()}, and is 0 while the simulation is exact:
+ * </p>
+ * <pre>{@code
+ * MatrixProductState mps = new MatrixProductState(circuit.qubits(), 64);
+ * circuit.execute(mps);
+ * int result = mps.measure(register);
+ * }</pre>
+ */
+public class MatrixProductState implements Backend {
+    /**singular values smaller than this, relative to the largest, are always discarded*/
+    private static final double CUTOFF = 1e-12;
+
+    /**the column of each qubit, which is its position in the order the qubits were given in*/
+    private final Map<Qubit,Integer> columns;
+    /**the amount of qubits*/
+    private final int n;
+    /**the largest dimension that a bond may have*/
+    private final int maxBond;
+    /**the simulator that owns the qubits, whose random source decides measurements, or {@code null}*/
+    private final Simulator simulator;
+    /**the site of the chain that holds each column, which changes as qubits are swapped to bring them together*/
+    private final int[] siteOf;
+    /**the column held at each site of the chain*/
+    private final int[] columnAt;
+    /**the dimension of the bond to the left of each site; the last entry is the bond to the right of the last site*/
+    private final int[] bonds;
+    /**the real parts of the tensor at each site, indexed by (physical state, left bond, right bond)*/
+    private final double[][] real;
+    /**the imaginary parts of the tensor at each site, in the same order as {@link #real}*/
+    private final double[][] imaginary;
+    /**the site that is not an isometry, and so holds the norm of the state*/
+    private int center;
+    /**the total weight of the singular values that have been discarded*/
+    private double truncationError;
+
+    /**
+     * Creates a matrix product state for a set of qubits, starting in the basis state that they are in.
+     * @param qubits the qubits that gates will be applied to, each of which must be in |0&gt; or |1&gt;
+     * @param maxBond the largest dimension that a bond may have
+     */
+    public MatrixProductState(Collection<Qubit> qubits, int maxBond){
+        if(maxBond < 1)
+            throw new IllegalArgumentException("Bond dimension must be positive");
+
+        this.maxBond = maxBond;
+        simulator = Simulator.of(qubits);
+        columns = new HashMap<>();
+        List<Qubit> order = new ArrayList<>();
+        for(Qubit q : qubits)
+            if(columns.putIfAbsent(q, columns.size()) == null)
+                order.add(q);
+
+        n = order.size();
+        siteOf = new int[n];
+        columnAt = new int[n];
+        bonds = new int[n+1];
+        real = new double[n][];
+        imaginary = new double[n][];
+        Arrays.fill(bonds, 1);
+        for(int i = 0; i < n; i++){
+            siteOf[i] = i;
+            columnAt[i] = i;
+            double p = order.get(i).probabilityOf(true);
+            if(p > 1e-9 && Math.abs(p - 1) > 1e-9)
+                throw new IllegalArgumentException("Qubits must be in a basis state");
+            real[i] = p > 0.5 ? new double[]{0, 1} : new double[]{1, 0};
+            imaginary[i] = new double[2];
+        }
+    }
+
+    /**
+     * Creates a matrix product state for a set of qubits, starting in the basis state that they are in. Bonds are never truncated, so
+     * the simulation is exact, but may use as much memory as a {@code QuantumState} for highly entangled states.
+     * @param qubits the qubits that gates will be applied to, each of which must be in |0&gt; or |1&gt;
+     */
+    public MatrixProductState(Qubit... qubits){
+        this(Arrays.asList(qubits), Integer.MAX_VALUE);
+    }
+
+    private MatrixProductState(MatrixProductState other){
+        columns = other.columns;
+        n = other.n;
+        maxBond = other.maxBond;
+        simulator = other.simulator;
+        siteOf = other.siteOf.clone();
+        columnAt = other.columnAt.clone();
+        bonds = other.bonds.clone();
+        real = new double[n][];
+        imaginary = new double[n][];
+        for(int i = 0; i < n; i++){
+            real[i] = other.real[i].clone();
+            imaginary[i] = other.imaginary[i].clone();
+        }
+        center = other.center;
+        truncationError = other.truncationError;
+    }
+
+    /**
+     * Applies a gate on one or two qubits. Two qubits that are not next to each other in the chain are first brought together with swaps.
+     * @param gate the gate to be applied, on one or two qubits
+     * @param operands the operand qubits, of the same amount as the size of the gate
+     */
+    @Override
+    public synchronized void apply(QuantumGate gate, Qubit... operands){
+        if(!supports(gate))
+            throw new IllegalArgumentException("Only gates on one or two qubits are supported");
+        if(operands.length != gate.size)
+            throw new IllegalArgumentException("Invalid number of operands");
+
+        Complex[][] matrix = gate.matrix();
+        int length = matrix.length;
+        double[] gr = new double[length*length];
+        double[] gi = new double[gr.length];
+        for(int x = 0; x < length; x++)
+            for(int y = 0; y < length; y++){
+                gr[x*length + y] = matrix[x][y].real();
+                gi[x*length + y] = matrix[x][y].imaginary();
+            }
+
+        if(gate.size == 1){
+            applySingle(siteOf[column(operands[0])], gr, gi);
+            return;
+        }
+
+        int a = column(operands[0]);
+        int b = column(operands[1]);
+        if(a == b)
+            throw new IllegalArgumentException("Operands must be distinct");
+
+        int left = Math.min(siteOf[a], siteOf[b]);
+        for(int site = Math.max(siteOf[a], siteOf[b]) - 1; site > left; site--)
+            swap(site);
+
+        if(siteOf[a] > siteOf[b]){
+            gr = swapOperands(gr);
+            gi = swapOperands(gi);
+        }
+        update(left, gr, gi, false);
+    }
+
+    /**
+     * @param gate a gate that could be applied
+     * @return whether the gate operates on one or two qubits
+     */
+    @Override
+    public boolean supports(QuantumGate gate){
+        return gate.size == 1 || gate.size == 2;
+    }
+
+    /**
+     * Collapses a {@code Qubit} to either |0&gt; or |1&gt;, within this matrix product state
+     * @param qubit the {@code Qubit} to be measured
+     * @return the result of this collapse
+     */
+    @Override
+    public synchronized boolean measure(Qubit qubit){
+        int site = siteOf[column(qubit)];
+        moveCenter(site);
+        double one = weight(site, 1);
+        boolean result = Simulator.random(simulator).nextDouble() * (weight(site, 0) + one) < one;
+        collapse(site, result);
+        return result;
+    }
+
+    /**
+     * Randomly chooses many states of a register at once, without collapse. Each sample is taken by measuring a copy of this state.
+     * @param qr the register to be sampled
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states of the register, each chosen independently
+     */
+    @Override
+    public synchronized int[] sample(QubitRegister qr, int shots){
+        qr.checkWidth(Integer.SIZE);
+        return BitUtils.narrow(sampleLong(qr, shots));
+    }
+
+    /**
+     * Randomly chooses many states of a register of up to 64 qubits at once, without collapse, as {@link #sample(QubitRegister, int)} does.
+     * @param qr the register to be sampled
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states of the register, each chosen independently
+     */
+    @Override
+    public synchronized long[] sampleLong(QubitRegister qr, int shots){
+        qr.checkWidth(Long.SIZE);
+        BitSet[] states = sampleBits(qr, shots);
+        long[] result = new long[shots];
+        for(int shot = 0; shot < shots; shot++)
+            result[shot] = BitUtils.toLong(states[shot]);
+        return result;
+    }
+
+    /**
+     * Randomly chooses many states of a register of any size at once, without collapse, as {@link #sample(QubitRegister, int)} does.
+     * @param qr the register to be sampled
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states of the register, in which bit n is the basis of the nth qubit
+     */
+    @Override
+    public synchronized BitSet[] sampleBits(QubitRegister qr, int shots){
+        BitSet[] result = new BitSet[shots];
+        for(int shot = 0; shot < shots; shot++){
+            result[shot] = new BitSet(qr.qubits.length);
+            MatrixProductState copy = new MatrixProductState(this);
+            for(int i = 0; i < qr.qubits.length; i++)
+                if(copy.measure(qr.qubits[i]))
+                    result[shot].set(i);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the probability of a given basis state of a {@code Qubit} if it were to collapse.
+     * @param qubit the {@code Qubit} to be tested
+     * @param state basis to test for the probability of
+     * @return the probability of this basis state occurring.
+     */
+    public synchronized double probabilityOf(Qubit qubit, boolean state){
+        int site = siteOf[column(qubit)];
+        moveCenter(site);
+        double one = weight(site, 1);
+        double total = weight(site, 0) + one;
+        return (state ? one : total - one) / total;
+    }
+
+    /**
+     * @return the total weight of the singular values that have been discarded by truncating bonds, which bounds how far the state
+     * has drifted from the exact one
+     */
+    public synchronized double truncationError(){
+        return truncationError;
+    }
+
+    /**
+     * @return the largest dimension of any bond in the chain
+     */
+    public synchronized int bondDimension(){
+        int max = 1;
+        for(int bond : bonds)
+            max = Math.max(max, bond);
+        return max;
+    }
+
+    private int column(Qubit qubit){
+        Integer column = columns.get(qubit);
+        if(column == null)
+            throw new IllegalArgumentException("Qubit is not part of this matrix product state");
+        return column;
+    }
+
+    /**
+     * Applies a gate on one qubit to the tensor of a site, which keeps the site an isometry if it was one.
+     */
+    private void applySingle(int site, double[] gr, double[] gi){
+        int block = bonds[site]*bonds[site+1];
+        double[] re = real[site];
+        double[] im = imaginary[site];
+        for(int i = 0; i < block; i++){
+            double r0 = re[i], i0 = im[i], r1 = re[block + i], i1 = im[block + i];
+            re[i] = gr[0]*r0 - gi[0]*i0 + gr[1]*r1 - gi[1]*i1;
+            im[i] = gr[0]*i0 + gi[0]*r0 + gr[1]*i1 + gi[1]*r1;
+            re[block + i] = gr[2]*r0 - gi[2]*i0 + gr[3]*r1 - gi[3]*i1;
+            im[block + i] = gr[2]*i0 + gi[2]*r0 + gr[3]*i1 + gi[3]*r1;
+        }
+    }
+
+    /**
+     * Exchanges the qubits of two neighbouring sites, leaving the center at the left one.
+     */
+    private void swap(int site){
+        double[] gr = new double[16];
+        for(int x = 0; x < 4; x++)
+            gr[((x & 1) << 1 | x >> 1)*4 + x] = 1;
+        update(site, gr, new double[16], true);
+
+        int column = columnAt[site];
+        columnAt[site] = columnAt[site+1];
+        columnAt[site+1] = column;
+        siteOf[columnAt[site]] = site;
+        siteOf[columnAt[site+1]] = site+1;
+    }
+
+    /**
+     * Reorders a gate on two qubits so that its first operand becomes the second.
+     */
+    private static double[] swapOperands(double[] gate){
+        double[] result = new double[16];
+        for(int x = 0; x < 4; x++)
+            for(int y = 0; y < 4; y++)
+                result[((x & 1) << 1 | x >> 1)*4 + ((y & 1) << 1 | y >> 1)] = gate[x*4 + y];
+        return result;
+    }
+
+    private void moveCenter(int site){
+        double[] gr = new double[16];
+        for(int x = 0; x < 4; x++)
+            gr[x*4 + x] = 1;
+        double[] gi = new double[16];
+        while(center < site)
+            update(center, gr, gi, false);
+        while(center > site)
+            update(center-1, gr, gi, true);
+    }
+
+    /**
+     * Applies a gate on two qubits to a pair of neighbouring sites, where the first operand is at the left site. The two tensors are
+     * contracted, multiplied by the gate, and split apart with a singular value decomposition, truncating the bond between them.
+     * @param site the left site
+     * @param gr the real parts of the gate matrix
+     * @param gi the imaginary parts of the gate matrix
+     * @param left whether the center is left at the left site, instead of the right one
+     */
+    private void update(int site, double[] gr, double[] gi, boolean left){
+        if(center < site)
+            moveCenter(site);
+        else if(center > site+1)
+            moveCenter(site+1);
+
+        int chiL = bonds[site], chiM = bonds[site+1], chiR = bonds[site+2];
+        int rows = 2*chiL, cols = 2*chiR;
+        double[] ar = real[site], ai = imaginary[site], br = real[site+1], bi = imaginary[site+1];
+
+        //contract the two tensors into theta[s1 + 2*s2][l][r]
+        double[] tr = new double[4*chiL*chiR];
+        double[] ti = new double[tr.length];
+        for(int s1 = 0; s1 < 2; s1++)
+            for(int s2 = 0; s2 < 2; s2++)
+                for(int l = 0; l < chiL; l++)
+                    for(int m = 0; m < chiM; m++){
+                        double xr = ar[(s1*chiL + l)*chiM + m];
+                        double xi = ai[(s1*chiL + l)*chiM + m];
+                        if(xr == 0 && xi == 0)
+                            continue;
+                        int out = ((s1 + 2*s2)*chiL + l)*chiR;
+                        int in = (s2*chiM + m)*chiR;
+                        for(int r = 0; r < chiR; r++){
+                            tr[out + r] += xr*br[in + r] - xi*bi[in + r];
+                            ti[out + r] += xr*bi[in + r] + xi*br[in + r];
+                        }
+                    }
+
+        //apply the gate, and arrange the result as a matrix with rows (s1, l) and columns (s2, r)
+        int block = chiL*chiR;
+        double[] mr = new double[rows*cols];
+        double[] mi = new double[mr.length];
+        for(int t = 0; t < 4; t++)
+            for(int s = 0; s < 4; s++){
+                double g = gr[t*4 + s], h = gi[t*4 + s];
+                if(g == 0 && h == 0)
+                    continue;
+                for(int l = 0; l < chiL; l++)
+                    for(int r = 0; r < chiR; r++){
+                        double vr = tr[s*block + l*chiR + r], vi = ti[s*block + l*chiR + r];
+                        int index = ((t & 1)*chiL + l)*cols + (t >> 1)*chiR + r;
+                        mr[index] += g*vr - h*vi;
+                        mi[index] += g*vi + h*vr;
+                    }
+            }
+
+        //find the left singular vectors, as the columns of M V
+        double[][] wr = new double[cols][rows];
+        double[][] wi = new double[cols][rows];
+        for(int x = 0; x < rows; x++)
+            for(int y = 0; y < cols; y++){
+                wr[y][x] = mr[x*cols + y];
+                wi[y][x] = mi[x*cols + y];
+            }
+        double[] norms = orthogonalize(wr, wi);
+
+        Integer[] order = new Integer[cols];
+        double total = 0;
+        for(int y = 0; y < cols; y++){
+            order[y] = y;
+            total += norms[y];
+        }
+        Arrays.sort(order, (p, q) -> Double.compare(norms[q], norms[p]));
+
+        int keep = 0;
+        double kept = 0;
+        while(keep < Math.min(maxBond, Math.min(rows, cols)) && norms[order[keep]] > CUTOFF*CUTOFF*norms[order[0]]){
+            kept += norms[order[keep]];
+            keep++;
+        }
+        truncationError += Math.max(0, (total - kept) / total);
+        double scale = Math.sqrt(total / kept);
+
+        //the left tensor is U, and the right one is U^H M, divided by the singular values if the center is moved left
+        double[] nar = new double[rows*keep], nai = new double[nar.length];
+        double[] nbr = new double[keep*cols], nbi = new double[nbr.length];
+        for(int j = 0; j < keep; j++){
+            int y = order[j];
+            double sigma = Math.sqrt(norms[y]);
+            for(int x = 0; x < rows; x++){
+                double ur = wr[y][x]/sigma, ui = wi[y][x]/sigma;
+                nar[x*keep + j] = left ? ur*sigma*scale : ur;
+                nai[x*keep + j] = left ? ui*sigma*scale : ui;
+                for(int c = 0; c < cols; c++){
+                    nbr[j*cols + c] += ur*mr[x*cols + c] + ui*mi[x*cols + c];
+                    nbi[j*cols + c] += ur*mi[x*cols + c] - ui*mr[x*cols + c];
+                }
+            }
+            double factor = left ? 1/sigma : scale;
+            for(int c = 0; c < cols; c++){
+                nbr[j*cols + c] *= factor;
+                nbi[j*cols + c] *= factor;
+            }
+        }
+
+        //nar is indexed by (s1, l, j), and nbr by (j, s2, r) which is reordered to (s2, j, r)
+        double[] br2 = new double[nbr.length], bi2 = new double[nbr.length];
+        for(int j = 0; j < keep; j++)
+            for(int s2 = 0; s2 < 2; s2++)
+                for(int r = 0; r < chiR; r++){
+                    br2[(s2*keep + j)*chiR + r] = nbr[j*cols + s2*chiR + r];
+                    bi2[(s2*keep + j)*chiR + r] = nbi[j*cols + s2*chiR + r];
+                }
+
+        real[site] = nar;
+        imaginary[site] = nai;
+        real[site+1] = br2;
+        imaginary[site+1] = bi2;
+        bonds[site+1] = keep;
+        center = left ? site : site+1;
+    }
+
+    /**
+     * Makes the columns of a complex matrix orthogonal with one-sided Jacobi rotations, which multiplies the matrix on the right by a
+     * unitary matrix V. The columns that result are the left singular vectors, scaled by the singular values.
+     * @param wr the real parts of each column, which are rotated in place
+     * @param wi the imaginary parts of each column, which are rotated in place
+     * @return the squared norm of each column, which are the squared singular values
+     */
+    private static double[] orthogonalize(double[][] wr, double[][] wi){
+        int cols = wr.length;
+        int rows = cols == 0 ? 0 : wr[0].length;
+        double[] norms = new double[cols];
+        for(int y = 0; y < cols; y++)
+            norms[y] = squaredNorm(wr[y], wi[y]);
+
+        boolean rotated = true;
+        for(int sweep = 0; sweep < 60 && rotated; sweep++){
+            rotated = false;
+            for(int p = 0; p < cols-1; p++)
+                for(int q = p+1; q < cols; q++){
+                    double alpha = norms[p], beta = norms[q];
+                    if(alpha == 0 || beta == 0)
+                        continue;
+
+                    double gr = 0, gi = 0;
+                    double[] pr = wr[p], pi = wi[p], qr = wr[q], qi = wi[q];
+                    for(int x = 0; x < rows; x++){
+                        gr += pr[x]*qr[x] + pi[x]*qi[x];
+                        gi += pr[x]*qi[x] - pi[x]*qr[x];
+                    }
+                    double gamma = Math.hypot(gr, gi);
+                    if(gamma <= 1e-15*Math.sqrt(alpha)*Math.sqrt(beta))
+                        continue;
+                    rotated = true;
+
+                    //rotate column q by the phase of gamma, then perform a real rotation
+                    double er = gr/gamma, ei = -gi/gamma;
+                    double zeta = (beta - alpha) / (2*gamma);
+                    double t = Math.signum(zeta) / (Math.abs(zeta) + Math.sqrt(1 + zeta*zeta));
+                    if(zeta == 0)
+                        t = 1;
+                    double c = 1/Math.sqrt(1 + t*t);
+                    double s = c*t;
+                    for(int x = 0; x < rows; x++){
+                        double ar = pr[x], ai = pi[x];
+                        double br = qr[x]*er - qi[x]*ei, bi = qr[x]*ei + qi[x]*er;
+                        pr[x] = c*ar - s*br;
+                        pi[x] = c*ai - s*bi;
+                        qr[x] = s*ar + c*br;
+                        qi[x] = s*ai + c*bi;
+                    }
+                    norms[p] = squaredNorm(pr, pi);
+                    norms[q] = squaredNorm(qr, qi);
+                }
+        }
+        return norms;
+    }
+
+    private static double squaredNorm(double[] re, double[] im){
+        double sum = 0;
+        for(int x = 0; x < re.length; x++)
+            sum += re[x]*re[x] + im[x]*im[x];
+        return sum;
+    }
+
+    /**
+     * @return the squared norm of the part of the center tensor with a given physical state
+     */
+    private double weight(int site, int state){
+        int block = bonds[site]*bonds[site+1];
+        double sum = 0;
+        for(int i = state*block; i < (state+1)*block; i++)
+            sum += real[site][i]*real[site][i] + imaginary[site][i]*imaginary[site][i];
+        return sum;
+    }
+
+    /**
+     * Projects the center tensor onto a physical state, and normalizes it again.
+     */
+    private void collapse(int site, boolean state){
+        int block = bonds[site]*bonds[site+1];
+        int kept = state ? 1 : 0;
+        double scale = 1/Math.sqrt(weight(site, kept));
+        for(int i = 0; i < 2*block; i++){
+            boolean inKept = i/block == kept;
+            real[site][i] = inKept ? real[site][i]*scale : 0;
+            imaginary[site][i] = inKept ? imaginary[site][i]*scale : 0;
+        }
+    }
+}
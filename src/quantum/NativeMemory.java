@@ -0,0 +1,83 @@
+package quantum;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The {@code NativeMemory} class allocates the buffers that hold a state outside of the Java heap. This class hands out direct
+ * {@code ByteBuffer}s, which are only freed once they are garbage collected. When the jdk.incubator.foreign module is present,
+ * {@code ForeignMemory} is used instead, which frees all of its buffers as soon as it is closed. A {@code MappedMemory} keeps its
+ * buffers in a file instead.
+ */
+class NativeMemory implements AutoCloseable {
+    /**the amount of states that use the buffers of this allocator, which are freed once there are none*/
+    private int references = 1;
+
+    /**
+     * @return a new allocator, whose buffers share a lifetime that ends when it is closed
+     */
+    static NativeMemory create(){
+        if(ModuleLayer.boot().findModule("jdk.incubator.foreign").isPresent()){
+            try{
+                return (NativeMemory) Class.forName("quantum.ForeignMemory").getDeclaredConstructor().newInstance();
+            }
+            catch(ReflectiveOperationException | LinkageError e){
+                //fall back to direct buffers
+            }
+        }
+        return new NativeMemory();
+    }
+
+    /**
+     * Allocates a buffer of zeros outside of the heap. Its pages are first touched by the calling thread, so on most operating systems
+     * they are placed on the memory of the processor that runs it.
+     * @param bytes the size of the buffer
+     * @return the buffer, in the native byte order
+     */
+    ByteBuffer allocate(int bytes){
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Allocates many buffers of zeros at once. They are allocated, and so first touched, by the threads of the pool, which spreads
+     * them over the memory of every processor.
+     * @param count the amount of buffers
+     * @param bytes the size of each buffer
+     * @return the buffers, in the native byte order
+     */
+    ByteBuffer[] allocate(int count, final int bytes){
+        final ByteBuffer[] buffers = new ByteBuffer[count];
+        Parallel.forRange(count, bytes / Double.BYTES, (from, to) -> {
+            for(int x = from; x < to; x++)
+                buffers[x] = allocate(bytes);
+        });
+        return buffers;
+    }
+
+    /**
+     * Adds a user of the buffers of this allocator, which must close it once it is done with them.
+     * @return this allocator
+     */
+    synchronized NativeMemory retain(){
+        references++;
+        return this;
+    }
+
+    /**
+     * Removes a user of the buffers of this allocator. Once all of them are gone, the lifetime of every buffer ends, after which they
+     * must not be used.
+     */
+    @Override
+    public final void close(){
+        synchronized(this){
+            if(--references != 0)
+                return;
+        }
+        free();
+    }
+
+    /**
+     * Ends the lifetime of every buffer allocated by this.
+     */
+    void free(){}
+}
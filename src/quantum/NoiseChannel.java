@@ -0,0 +1,128 @@
+package quantum;
+
+/**
+ * The {@code NoiseChannel} class represents a source of noise on a single qubit, in the form of the Kraus operators K<sub>i</sub>
+ * that send a density matrix ρ to Σ K<sub>i</sub> ρ K<sub>i</sub>†. Channels are applied to a {@code DensityMatrix}, either directly
+ * or after every gate, to model the errors of real hardware. {@code Trajectories} instead pick a single Kraus operator at random each
+ * time the channel acts.
+ */
+public class NoiseChannel {
+    /**the real parts of each Kraus operator, as a 2x2 matrix stored row by row*/
+    final double[][] krausReal;
+    /**the imaginary parts of each Kraus operator, as a 2x2 matrix stored row by row*/
+    final double[][] krausImaginary;
+    /**the probability of each Kraus operator if it does not depend on the state, as for a mixture of unitary errors, or {@code null}*/
+    final double[] weights;
+    /**the real parts of Σ K ⊗ conj(K), which applies the channel to the row and column bits of a qubit at once*/
+    final double[] superReal;
+    /**the imaginary parts of Σ K ⊗ conj(K), in the same order as {@link #superReal}*/
+    final double[] superImaginary;
+
+    /**
+     * Creates a channel from its Kraus operators, which must satisfy Σ K<sub>i</sub>† K<sub>i</sub> = I.
+     * @param krausReal the real parts of each Kraus operator, as a 2x2 matrix stored row by row
+     * @param krausImaginary the imaginary parts of each Kraus operator, as a 2x2 matrix stored row by row
+     */
+    NoiseChannel(double[][] krausReal, double[][] krausImaginary){
+        this.krausReal = krausReal;
+        this.krausImaginary = krausImaginary;
+
+        //the sum of K†K, which must be the identity for the channel to preserve probability
+        double[] sum = new double[8];
+        double[] weights = new double[krausReal.length];
+        for(int k = 0; k < krausReal.length; k++){
+            double[] product = new double[8];
+            for(int x = 0; x < 2; x++)
+                for(int y = 0; y < 2; y++)
+                    for(int z = 0; z < 2; z++){
+                        double ar = krausReal[k][z*2 + x], ai = -krausImaginary[k][z*2 + x];
+                        double br = krausReal[k][z*2 + y], bi = krausImaginary[k][z*2 + y];
+                        product[(x*2 + y)*2] += ar*br - ai*bi;
+                        product[(x*2 + y)*2 + 1] += ar*bi + ai*br;
+                    }
+            for(int x = 0; x < 8; x++)
+                sum[x] += product[x];
+
+            //K†K is a multiple of the identity when K is a scaled unitary, such as a Pauli error
+            if(weights != null && Math.abs(product[0] - product[6]) < 1e-12 && Math.abs(product[1]) + Math.abs(product[7]) < 1e-12
+                    && Math.abs(product[2]) + Math.abs(product[3]) < 1e-12)
+                weights[k] = product[0];
+            else
+                weights = null;
+        }
+        for(int x = 0; x < 4; x++)
+            if(Math.abs(sum[x*2] - (x == 0 || x == 3 ? 1 : 0)) > 1e-9 || Math.abs(sum[x*2 + 1]) > 1e-9)
+                throw new IllegalArgumentException("Kraus operators do not preserve probability");
+        this.weights = weights;
+
+        superReal = new double[16];
+        superImaginary = new double[16];
+        for(int k = 0; k < krausReal.length; k++)
+            addSuperoperator(krausReal[k], krausImaginary[k], superReal, superImaginary);
+    }
+
+    /**
+     * Adds K ⊗ conj(K) to a 4x4 matrix, which sends ρ to K ρ K† when it is applied to the row and column bits of a qubit. The row bit
+     * is bit 0 of the index of the matrix, and the column bit is bit 1.
+     * @param kr the real parts of K, as a 2x2 matrix stored row by row
+     * @param ki the imaginary parts of K, as a 2x2 matrix stored row by row
+     * @param sr the real parts of the 4x4 matrix, stored row by row
+     * @param si the imaginary parts of the 4x4 matrix, stored row by row
+     */
+    static void addSuperoperator(double[] kr, double[] ki, double[] sr, double[] si){
+        for(int x = 0; x < 4; x++)
+            for(int y = 0; y < 4; y++){
+                double ar = kr[(x & 1)*2 + (y & 1)], ai = ki[(x & 1)*2 + (y & 1)];
+                double br = kr[(x >> 1)*2 + (y >> 1)], bi = -ki[(x >> 1)*2 + (y >> 1)];
+                sr[x*4 + y] += ar*br - ai*bi;
+                si[x*4 + y] += ar*bi + ai*br;
+            }
+    }
+
+    /**
+     * Creates a channel that replaces the state of a qubit with a random Pauli error. With probability {@code p}, one of X, Y and Z
+     * is applied, each equally likely.
+     * @param p the probability of an error, on [0,1]
+     * @return the depolarizing channel
+     */
+    public static NoiseChannel depolarizing(double p){
+        checkProbability(p);
+        double a = Math.sqrt(1 - p);
+        double b = Math.sqrt(p / 3);
+        return new NoiseChannel(
+                new double[][]{{a, 0, 0, a}, {0, b, b, 0}, {0, 0, 0, 0}, {b, 0, 0, -b}},
+                new double[][]{{0, 0, 0, 0}, {0, 0, 0, 0}, {0, -b, b, 0}, {0, 0, 0, 0}});
+    }
+
+    /**
+     * Creates a channel that models the loss of energy of a qubit, which decays from |1&gt; to |0&gt; with probability {@code gamma}.
+     * @param gamma the probability of decay, on [0,1]
+     * @return the amplitude damping channel
+     */
+    public static NoiseChannel amplitudeDamping(double gamma){
+        checkProbability(gamma);
+        return new NoiseChannel(
+                new double[][]{{1, 0, 0, Math.sqrt(1 - gamma)}, {0, Math.sqrt(gamma), 0, 0}},
+                new double[][]{{0, 0, 0, 0}, {0, 0, 0, 0}});
+    }
+
+    /**
+     * Creates a channel that models the loss of phase of a qubit, by applying a Z error with probability {@code p}. The populations of
+     * |0&gt; and |1&gt; are unchanged, while the coherence between them shrinks by a factor of 1-2p.
+     * @param p the probability of a phase flip, on [0,1]
+     * @return the dephasing channel
+     */
+    public static NoiseChannel dephasing(double p){
+        checkProbability(p);
+        double a = Math.sqrt(1 - p);
+        double b = Math.sqrt(p);
+        return new NoiseChannel(
+                new double[][]{{a, 0, 0, a}, {b, 0, 0, -b}},
+                new double[][]{{0, 0, 0, 0}, {0, 0, 0, 0}});
+    }
+
+    private static void checkProbability(double p){
+        if(!(p >= 0 && p <= 1))
+            throw new IllegalArgumentException("probability must be on [0,1]");
+    }
+}
@@ -0,0 +1,396 @@
+package quantum;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * The {@code OffHeapState} class is a {@code Backend} that stores the full state vector of its qubits outside of the Java heap, so that
+ * states are only limited by the memory of the machine, rather than by the size of the heap or the largest array. The coefficients
+ * are split into chunks of 2<sup>20</sup>, indexed by the low qubits, and each chunk is allocated and first touched by a thread of the
+ * pool, which spreads the chunks over the memory of every processor.
+ *
+ * <p>
+ *     A gate whose operands all lie within a chunk is applied to one chunk at a time. Otherwise, the chunks that differ only in the
+ *     operands above them are gathered together, so that every gate is applied with the same kernels as a {@code QuantumState}.
+ *     The memory is freed when the state is closed, immediately if the jdk.incubator.foreign module is present. Either way, it
+ *     counts towards the limit of {@code -XX:MaxDirectMemorySize}, which is the size of the heap unless it is raised:
+ * </p>
+ * <p>
+ *     A state that is too large for the memory of the machine can be kept in a file instead, which the operating system pages in as
+ *     it is used. The chunks lie in the file in order, each with its real parts followed by its imaginary parts, and every pass over
+ *     the state visits them in that order, even when a gate gathers chunks that are far apart. The file is then read as a few
+ *     sequential streams, rather than at random.
+ * </p>
+ * <p>
+ *     A state can be forked, to try many variants of it without preparing it again. The fork shares every chunk with the state until
+ *     either of them changes that chunk, so that each variant only costs the memory of the chunks that it touches.
+ * </p>
+ * <pre>{@code
+ * try(OffHeapState state = new OffHeapState(circuit.qubits())){
+ *     circuit.execute(state);
+ *     int[] results = state.sample(register, 1000);
+ * }
+ * }</pre>
+ */
+public class OffHeapState implements Backend, AutoCloseable {
+    /**the most qubits that an off-heap state can hold*/
+    private static final int MAX_QUBITS = 40;
+    /**the amount of low qubits that index the coefficients within a chunk*/
+    private static final int CHUNK_BITS = 20;
+
+    /**the bit of the basis states that belongs to each qubit*/
+    private final Map<Qubit,Integer> bits;
+    /**the amount of qubits*/
+    private final int n;
+    /**the amount of qubits that index the coefficients within a chunk, which is less than {@link #CHUNK_BITS} for small states*/
+    private final int chunkBits;
+    /**the simulator that owns the qubits, whose random source decides measurements, or {@code null}*/
+    private final Simulator simulator;
+    /**the allocator of the chunks that this state creates, which frees them once every state that uses them is closed*/
+    private final NativeMemory memory;
+    /**every allocator that holds chunks of this state, including {@link #memory}, each of which is closed along with this state*/
+    private final List<NativeMemory> memories;
+    /**the real parts of the coefficients of each chunk, or {@code null} once this is closed*/
+    private DoubleBuffer[] real;
+    /**the imaginary parts of the coefficients of each chunk, or {@code null} once this is closed*/
+    private DoubleBuffer[] imaginary;
+    /**whether each chunk may also belong to a fork of this state, in which case it is copied before it is changed*/
+    private final boolean[] shared;
+
+    /**
+     * Creates an off-heap state for a set of qubits, starting in the basis state that they are in.
+     * @param qubits the qubits that gates will be applied to, each of which must be in |0&gt; or |1&gt;
+     */
+    public OffHeapState(Collection<Qubit> qubits){
+        this(qubits, null);
+    }
+
+    /**
+     * Creates an off-heap state for a set of qubits, starting in the basis state that they are in.
+     * @param qubits the qubits that gates will be applied to, each of which must be in |0&gt; or |1&gt;
+     */
+    public OffHeapState(Qubit... qubits){
+        this(Arrays.asList(qubits));
+    }
+
+    /**
+     * Creates a state for a set of qubits that is kept in a file rather than in memory, starting in the basis state that they are in.
+     * @param qubits the qubits that gates will be applied to, each of which must be in |0&gt; or |1&gt;
+     * @param file the file to hold the coefficients, which is replaced if it exists, and deleted when the state is closed or the JVM exits
+     * @throws java.io.UncheckedIOException if the file cannot be created or mapped
+     */
+    public OffHeapState(Collection<Qubit> qubits, Path file){
+        simulator = Simulator.of(qubits);
+        bits = new HashMap<>();
+        long state = 0;
+        for(Qubit q : qubits)
+            if(bits.putIfAbsent(q, bits.size()) == null){
+                if(bits.size() > MAX_QUBITS)
+                    throw new IllegalArgumentException("Too many qubits for an off-heap state");
+                double p = q.probabilityOf(true);
+                if(p > 1e-9 && Math.abs(p - 1) > 1e-9)
+                    throw new IllegalArgumentException("Qubits must be in a basis state");
+                if(p > 0.5)
+                    state |= 1L<<bits.get(q);
+            }
+
+        n = bits.size();
+        chunkBits = Math.min(n, CHUNK_BITS);
+        memory = file == null ? NativeMemory.create() : new MappedMemory(file);
+        final int size = 1<<chunkBits;
+        real = new DoubleBuffer[1<<(n - chunkBits)];
+        imaginary = new DoubleBuffer[real.length];
+        try{
+            //the imaginary parts of each chunk follow its real parts, so that they lie next to each other in a file
+            ByteBuffer[] buffers = memory.allocate(2 * real.length, size * Double.BYTES);
+            for(int c = 0; c < real.length; c++){
+                real[c] = buffers[2*c].asDoubleBuffer();
+                imaginary[c] = buffers[2*c + 1].asDoubleBuffer();
+            }
+        }
+        catch(RuntimeException | OutOfMemoryError e){
+            memory.close();
+            throw e;
+        }
+        real[(int)(state >>> chunkBits)].put((int)state & (size - 1), 1);
+        memories = new ArrayList<>(Collections.singletonList(memory));
+        shared = new boolean[real.length];
+    }
+
+    /**
+     * Creates a fork of a state, which shares all of its chunks. The caller must hold the lock of the state.
+     * @param other the state to be forked
+     */
+    private OffHeapState(OffHeapState other){
+        bits = other.bits;
+        n = other.n;
+        chunkBits = other.chunkBits;
+        simulator = other.simulator;
+        memory = NativeMemory.create();
+        memories = new ArrayList<>(Collections.singletonList(memory));
+        for(NativeMemory m : other.memories)
+            memories.add(m.retain());
+        real = other.real.clone();
+        imaginary = other.imaginary.clone();
+        shared = new boolean[real.length];
+        Arrays.fill(shared, true);
+        Arrays.fill(other.shared, true);
+    }
+
+    /**
+     * Creates a state of the same qubits that starts out equal to this one, without copying any coefficients. Each chunk is only
+     * copied once either of the two states changes it, so that gates that only act on some of the chunks, such as those controlled by
+     * a high qubit, leave the rest shared. Chunks that a fork of a file-backed state copies are kept in memory. The fork must be closed
+     * on its own, and the memory of the chunks that it shares is freed once both states are closed.
+     * @return the new state
+     */
+    public synchronized OffHeapState fork(){
+        checkOpen();
+        return new OffHeapState(this);
+    }
+
+    /**
+     * Applies a gate to a set of qubits.
+     * @param gate the gate to be applied
+     * @param operands the operand qubits, of the same amount as the size of the gate
+     */
+    @Override
+    public synchronized void apply(QuantumGate gate, Qubit... operands){
+        checkOpen();
+        if(operands.length != gate.size)
+            throw new IllegalArgumentException("Invalid number of operands");
+
+        final QuantumGate target = gate.target;
+        //operands above the chunk are moved to the bits above the gathered chunks, and controls above it choose the chunks instead
+        int[] local = new int[operands.length];
+        int count = 0;
+        int[] high = new int[operands.length];
+        int h = 0;
+        int fixed = 0;
+        int controls = 0;
+        for(int x = 0; x < operands.length; x++){
+            int b = bit(operands[x]);
+            if(b < chunkBits)
+                local[count++] = b;
+            else if(x < target.size){
+                local[count++] = chunkBits + h;
+                high[h++] = b - chunkBits;
+                fixed |= 1<<(b - chunkBits);
+            }
+            else
+                controls |= 1<<(b - chunkBits);
+        }
+
+        final int[] indices = Arrays.copyOf(local, count);
+        //the offset of each of the gathered chunks from the first
+        final int[] offsets = new int[1<<h];
+        for(int j = 0; j < offsets.length; j++)
+            for(int k = 0; k < h; k++)
+                if((j >>> k & 1) != 0)
+                    offsets[j] |= 1<<high[k];
+
+        final int free = (real.length - 1) & ~(fixed | controls);
+        final int set = controls;
+        final int size = 1<<chunkBits;
+        Parallel.forRange(1<<Integer.bitCount(free), size * offsets.length, (from, to) -> {
+            double[] gatheredReal = new double[size * offsets.length];
+            double[] gatheredImaginary = new double[gatheredReal.length];
+            for(int g = from; g < to; g++){
+                int first = BitUtils.deposit(g, free) | set;
+                for(int j = 0; j < offsets.length; j++){
+                    real[first | offsets[j]].get(0, gatheredReal, j * size, size);
+                    imaginary[first | offsets[j]].get(0, gatheredImaginary, j * size, size);
+                }
+                QuantumState.apply(gatheredReal, gatheredImaginary, target, indices);
+                for(int j = 0; j < offsets.length; j++){
+                    own(first | offsets[j]);
+                    real[first | offsets[j]].put(0, gatheredReal, j * size, size);
+                    imaginary[first | offsets[j]].put(0, gatheredImaginary, j * size, size);
+                }
+            }
+        });
+    }
+
+    /**
+     * Collapses a {@code Qubit} to either |0&gt; or |1&gt;, within this state
+     * @param qubit the {@code Qubit} to be measured
+     * @return the result of this collapse
+     */
+    @Override
+    public synchronized boolean measure(Qubit qubit){
+        checkOpen();
+        final int b = bit(qubit);
+        double one = probabilityOf(b);
+        final boolean result = Simulator.random(simulator).nextDouble() < one;
+        final double constant = 1 / Math.sqrt(result ? one : 1 - one);
+        final int size = 1<<chunkBits;
+        Parallel.forRange(real.length, size, (from, to) -> {
+            for(int c = from; c < to; c++){
+                own(c);
+                for(int i = 0; i < size; i++){
+                    boolean kept = (b < chunkBits ? (i >>> b & 1) : (c >>> (b - chunkBits) & 1)) == (result ? 1 : 0);
+                    real[c].put(i, kept ? real[c].get(i) * constant : 0);
+                    imaginary[c].put(i, kept ? imaginary[c].get(i) * constant : 0);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Randomly chooses many states of a register at once, without collapse. The total probability of each chunk is found first, after
+     * which each sample is found by a binary search over the chunks, and then over the coefficients of its chunk.
+     * @param qr the register to be sampled
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states of the register, each chosen independently
+     */
+    @Override
+    public synchronized int[] sample(QubitRegister qr, int shots){
+        qr.checkWidth(Integer.SIZE);
+        return BitUtils.narrow(sampleLong(qr, shots));
+    }
+
+    /**
+     * Randomly chooses many states of a register of up to 64 qubits at once, without collapse, as {@link #sample(QubitRegister, int)} does.
+     * @param qr the register to be sampled
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states of the register, each chosen independently
+     */
+    @Override
+    public synchronized long[] sampleLong(QubitRegister qr, int shots){
+        qr.checkWidth(Long.SIZE);
+        checkOpen();
+        int[] positions = new int[qr.qubits.length];
+        for(int x = 0; x < positions.length; x++)
+            positions[x] = bit(qr.qubits[x]);
+
+        final int size = 1<<chunkBits;
+        final double[] totals = new double[real.length];
+        Parallel.forRange(real.length, size, (from, to) -> {
+            for(int c = from; c < to; c++)
+                for(int i = 0; i < size; i++)
+                    totals[c] += absoluteSquare(c, i);
+        });
+        double[] cumulative = new double[real.length];
+        double total = 0;
+        for(int c = 0; c < real.length; c++)
+            cumulative[c] = total += totals[c];
+
+        //the samples are visited in the order of their chunks, so that each chunk is only read once
+        double[] uniforms = new double[shots];
+        Simulator.random(simulator).nextDoubles(uniforms);
+        long[] order = new long[shots];
+        for(int shot = 0; shot < shots; shot++){
+            uniforms[shot] *= total;
+            order[shot] = (long)find(cumulative, uniforms[shot]) << 32 | shot;
+        }
+        Arrays.sort(order);
+
+        long[] result = new long[shots];
+        double[] chunk = new double[size];
+        for(int x = 0, c = -1; x < shots; x++){
+            int shot = (int)order[x];
+            if(c != (int)(order[x] >>> 32)){
+                c = (int)(order[x] >>> 32);
+                double sum = c == 0 ? 0 : cumulative[c - 1];
+                for(int i = 0; i < size; i++)
+                    chunk[i] = sum += absoluteSquare(c, i);
+            }
+            long state = (long)c << chunkBits | find(chunk, uniforms[shot]);
+            for(int y = 0; y < positions.length; y++)
+                if((state >>> positions[y] & 1) != 0)
+                    result[shot] |= 1L<<y;
+        }
+        return result;
+    }
+
+    /**
+     * Finds the probability of a given basis state of a {@code Qubit} if it were to collapse.
+     * @param qubit the {@code Qubit} to be tested
+     * @param state basis to test for the probability of
+     * @return the probability of this basis state occurring.
+     */
+    public synchronized double probabilityOf(Qubit qubit, boolean state){
+        checkOpen();
+        double one = probabilityOf(bit(qubit));
+        return state ? one : 1 - one;
+    }
+
+    /**
+     * Frees the memory of this state, apart from the chunks that a fork of it still uses. It must not be used afterwards.
+     */
+    @Override
+    public synchronized void close(){
+        if(real != null){
+            real = null;
+            imaginary = null;
+            for(NativeMemory m : memories)
+                m.close();
+        }
+    }
+
+    /**
+     * Copies a chunk into the memory of this state if it is shared with a fork, so that it can be changed in place. Each chunk is only
+     * owned by one thread at a time.
+     */
+    private void own(int c){
+        if(!shared[c])
+            return;
+        int size = 1<<chunkBits;
+        DoubleBuffer re = memory.allocate(size * Double.BYTES).asDoubleBuffer();
+        DoubleBuffer im = memory.allocate(size * Double.BYTES).asDoubleBuffer();
+        re.put(0, real[c], 0, size);
+        im.put(0, imaginary[c], 0, size);
+        real[c] = re;
+        imaginary[c] = im;
+        shared[c] = false;
+    }
+
+    private void checkOpen(){
+        if(real == null)
+            throw new IllegalStateException("State is closed");
+    }
+
+    private int bit(Qubit qubit){
+        Integer bit = bits.get(qubit);
+        if(bit == null)
+            throw new IllegalArgumentException("Qubit is not part of this state");
+        return bit;
+    }
+
+    private double absoluteSquare(int c, int i){
+        double re = real[c].get(i);
+        double im = imaginary[c].get(i);
+        return re*re + im*im;
+    }
+
+    /**
+     * @return the total probability of the basis states in which a bit is set
+     */
+    private double probabilityOf(final int b){
+        final int size = 1<<chunkBits;
+        return Parallel.sum(real.length, size, (from, to) -> {
+            double sum = 0;
+            for(int c = from; c < to; c++)
+                if(b < chunkBits){
+                    for(int i = 0; i < size; i++)
+                        if((i >>> b & 1) != 0)
+                            sum += absoluteSquare(c, i);
+                }
+                else if((c >>> (b - chunkBits) & 1) != 0)
+                    for(int i = 0; i < size; i++)
+                        sum += absoluteSquare(c, i);
+            return sum;
+        });
+    }
+
+    /**
+     * @return the first index whose cumulative probability exceeds a value, or the last index if there is none
+     */
+    private static int find(double[] cumulative, double value){
+        int i = Arrays.binarySearch(cumulative, value);
+        return Math.min(i < 0 ? -i-1 : i, cumulative.length-1);
+    }
+}
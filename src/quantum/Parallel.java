@@ -0,0 +1,121 @@
+package quantum;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The {@code Parallel} class splits loops over the coefficients of a {@code QuantumState} across the {@code ForkJoinPool} of the
+ * {@code Configuration}. Loops are given as a range of items, each of which visits a known amount of coefficients, and they only run
+ * in parallel once they visit at least {@link Configuration#getParallelThreshold()} coefficients.
+ */
+final class Parallel {
+    /**
+     * A loop body over a range of items
+     */
+    interface Range {
+        /**
+         * @param from the first item of the range
+         * @param to one past the last item of the range
+         */
+        void run(int from, int to);
+    }
+
+    /**
+     * A loop body over a range of items that adds up a value for each of them
+     */
+    interface Sum {
+        /**
+         * @param from the first item of the range
+         * @param to one past the last item of the range
+         * @return the total of the range
+         */
+        double sum(int from, int to);
+    }
+
+    private Parallel(){}
+
+    /**
+     * Runs a loop over the items {@code 0..count-1}, in parallel if it is large enough.
+     * @param count the amount of items
+     * @param width the amount of coefficients visited by each item
+     * @param body the loop body, which must be safe to run on disjoint ranges at the same time
+     */
+    static void forRange(int count, int width, Range body){
+        int grain = grain(width);
+        if(count <= grain)
+            body.run(0, count);
+        else
+            Configuration.getPool().invoke(new RangeTask(0, count, grain, body));
+    }
+
+    /**
+     * Adds up the totals of a loop over the items {@code 0..count-1}, in parallel if it is large enough.
+     * @param count the amount of items
+     * @param width the amount of coefficients visited by each item
+     * @param body the loop body, which must be safe to run on disjoint ranges at the same time
+     * @return the total of all items
+     */
+    static double sum(int count, int width, Sum body){
+        int grain = grain(width);
+        if(count <= grain)
+            return body.sum(0, count);
+        return Configuration.getPool().invoke(new SumTask(0, count, grain, body));
+    }
+
+    /**
+     * @param width the amount of coefficients visited by each item
+     * @return the amount of items that should be run by a single task
+     */
+    private static int grain(int width){
+        return Math.max(1, Configuration.getParallelThreshold()/Math.max(1, width));
+    }
+
+    private static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to, grain;
+        private final Range body;
+
+        RangeTask(int from, int to, int grain, Range body){
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from <= grain)
+                body.run(from, to);
+            else{
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeTask(from, middle, grain, body), new RangeTask(middle, to, grain, body));
+            }
+        }
+    }
+
+    private static class SumTask extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to, grain;
+        private final Sum body;
+
+        SumTask(int from, int to, int grain, Sum body){
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        @Override
+        protected Double compute(){
+            if(to - from <= grain)
+                return body.sum(from, to);
+            int middle = (from + to) >>> 1;
+            SumTask right = new SumTask(middle, to, grain, body);
+            right.fork();
+            double left = new SumTask(from, middle, grain, body).compute();
+            return left + right.join();
+        }
+    }
+}
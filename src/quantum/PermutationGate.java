@@ -0,0 +1,98 @@
+package quantum;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The {@code PermutationGate} class represents a gate whose matrix only contains zeros and ones, meaning that it maps every basis state
+ * to another basis state. These are the gates of classical reversible functions. Instead of a full matrix, it stores where each basis
+ * state is sent, and is applied by moving the coefficients to their new basis states.
+ */
+public class PermutationGate extends QuantumGate {
+    /**the basis state that each basis state is mapped to*/
+    final int[] mapping;
+
+    /**
+     * Creates a gate that sends each basis state to another basis state.
+     * @param mapping the basis state that each basis state from |0⟩⊗n to |1⟩⊗n is mapped to. This must be a permutation of
+     *                {@code 0..mapping.length-1}, and its length must be a power of 2. It is copied, so changing it afterwards does not
+     *                change the gate.
+     */
+    public PermutationGate(int... mapping){
+        this(sizeOf(mapping.length), mapping.clone());
+    }
+
+    /**
+     * Creates a gate of a given size that sends each basis state to the basis state given by a function.
+     * The function is evaluated once for each basis state.
+     * @param size the amount of qubits that this gate operates on
+     * @param mapping a reversible function from a basis state to the basis state it is sent to
+     */
+    public PermutationGate(int size, IntUnaryOperator mapping){
+        this(size, mappings(size, mapping));
+    }
+
+    /**
+     * Creates a gate from a mapping that nothing else refers to, which is kept without being copied.
+     * @param size the amount of qubits that this gate operates on
+     * @param mapping the basis state that each basis state is mapped to, of length 2<sup>size</sup>
+     */
+    private PermutationGate(int size, int[] mapping){
+        super(size);
+        this.mapping = mapping;
+        if(!isUnitary())
+            throw new IllegalArgumentException("Mapping is not a permutation");
+    }
+
+    /**
+     * Creates the full matrix of this gate, with a single 1 in each column.
+     * @return the matrix of this gate
+     */
+    @Override
+    Complex[][] matrix(){
+        Complex[][] result = new Complex[mapping.length][mapping.length];
+        for(int x = 0; x < result.length; x++)
+            for(int y = 0; y < result.length; y++)
+                result[x][y] = mapping[y]==x ? Complex.ONE : Complex.ZERO;
+        return result;
+    }
+
+    /**
+     * Creates the inverse of this gate, which sends every basis state back to where it came from.
+     * @return The inverse of this gate.
+     */
+    @Override
+    public QuantumGate inverse(){
+        int[] inverse = new int[mapping.length];
+        for(int x = 0; x < mapping.length; x++)
+            inverse[mapping[x]] = x;
+        return new PermutationGate(size, inverse);
+    }
+
+    /**
+     * Determines whether this {@code PermutationGate} is unitary, which is the case iff no two basis states are mapped to the same basis state.
+     * @return whether this {@code PermutationGate} is unitary or not.
+     */
+    @Override
+    public boolean isUnitary(){
+        boolean[] reached = new boolean[mapping.length];
+        for(int x : mapping){
+            if(x < 0 || x >= mapping.length || reached[x])
+                return false;
+            reached[x] = true;
+        }
+        return true;
+    }
+
+    private static int sizeOf(int length){
+        if((length & (length - 1)) != 0 || length == 0)
+            throw new IllegalArgumentException("Mapping not of proper dimensions");
+        return BitUtils.log2(length)-1;
+    }
+
+    private static int[] mappings(int size, IntUnaryOperator mapping){
+        int[] result = new int[1<<size];
+        for(int x = 0; x < result.length; x++)
+            result[x] = mapping.applyAsInt(x);
+        return result;
+    }
+}
@@ -156,28 +156,22 @@ public class QuantumAlgorithm{
      */
     public static Consumer<QubitRegister> oracle(Predicate<Integer> function){
         return qr->{
-            Complex[][] matrix = new Complex[1 << qr.qubits.length][1 << qr.qubits.length];
-
-            for (int x = 0; x < 1 << qr.qubits.length; x++) {
-                boolean test = function.test(x);
-                for (int y = 0; y < 1 << qr.qubits.length; y++) {
-                    if (x == y && test)
-                        matrix[x][y] = new Complex(-1);
-                    else if (x == y)
-                        matrix[x][y] = ONE;
-                    else
-                        matrix[x][y] = ZERO;
-                }
-            }
+            double[] real = new double[1 << qr.qubits.length];
+            double[] imaginary = new double[1 << qr.qubits.length];
+
+            for (int x = 0; x < 1 << qr.qubits.length; x++)
+                real[x] = function.test(x) ? -1 : 1;
 
-            new QuantumGate(matrix).accept(qr);
+            new DiagonalGate(real, imaginary).accept(qr);
         };
     }
 
     /**
      * Creates a quantum function version of a given integer operator. The resulting function will take two registers as input, one to
-     * be used as input for the function, and the other to be used as a regiser for the output. Any data in the output register will
-     * be ignored. The resulant function will instantiate a gate of arbitrary size, that will execute the function given.
+     * be used as input for the function, and the other to be used as a regiser for the output. The output of the function is XORed
+     * into the output register, so an output register of |0⟩ will simply hold the output afterwards, and applying the quantum function
+     * twice undoes it. The resulant function will instantiate a {@code PermutationGate} of arbitrary size, that will execute the function
+     * given, and the function is evaluated once for each possible input.
      * @param function The function to be mapped into a quantum function
      * @return the quantum function created
      */
@@ -189,21 +183,12 @@ public class QuantumAlgorithm{
             System.arraycopy(input.qubits,0,qubits,0,input.qubits.length);
             System.arraycopy(output.qubits,0,qubits,input.qubits.length,output.qubits.length);
 
-            Complex[][] matrix = new Complex[1 << qubits.length][1 << qubits.length];
-
             int mask = (1<<input.qubits.length)-1;
+            int[] values = new int[1 << input.qubits.length];
+            for (int x = 0; x < values.length; x++)
+                values[x] = function.apply(x) & ((1<<output.qubits.length)-1);
 
-            for (int x = 0; x < 1 << qubits.length; x++) {
-                for (int y = 0; y < 1 << qubits.length; y++) {
-                    int value = function.apply(y&mask)%(1<<output.qubits.length);
-                    matrix[x][y] = ZERO;
-                    //if x is the output of y
-                    if((x&mask)==(y&mask) && (x>>>input.qubits.length)==value)
-                        matrix[x][y] = ONE;
-                }
-            }
-
-            new QuantumGate(matrix).accept(qubits);
+            new PermutationGate(qubits.length, y -> y ^ (values[y&mask] << input.qubits.length)).accept(qubits);
         };
     }
 
@@ -234,14 +219,14 @@ public class QuantumAlgorithm{
         int r;
         int a;
         while(true){
-            a = (int)(Math.random()*N);
+            a = (int)(Configuration.getRandomSource().nextDouble()*N);
             if(BigInteger.valueOf(a).gcd(BigInteger.valueOf(N)).intValueExact()!=1) {
                 System.out.println("found solution trivially :(");
                 return BigInteger.valueOf(a).gcd(BigInteger.valueOf(N)).intValueExact();
             }
             r = shorsQuantumSubroutine(N,a);
-            if(r%2==0 && ((int)Math.pow(a,r/2))%N != N-1)
-                return BigInteger.valueOf((int)Math.pow(a,r/2) + 1).gcd(BigInteger.valueOf(N)).intValueExact();
+            if(r%2==0 && modPow(a,r/2,N) != N-1)
+                return BigInteger.valueOf(modPow(a,r/2,N) + 1).gcd(BigInteger.valueOf(N)).intValueExact();
         }
     }
 
@@ -250,7 +235,7 @@ public class QuantumAlgorithm{
         int n = log2(N);
         int q = log2(N*N);
         int Q = 1<<q;
-        QubitRegister qr = periodFinder(quantumFunction(x -> ((int) Math.pow(a, x)) % N), q, n);
+        QubitRegister qr = periodFinder(quantumFunction(x -> modPow(a, x, N)), q, n);
         while(true) {
             evaluations++;
             int y = qr.sample();
@@ -259,7 +244,7 @@ public class QuantumAlgorithm{
                 //if (Math.abs((q / (double) Q) - (cfe[0][x] / (double) cfe[1][x])) < 1 / (double) (2 * Q)) { //according to wikipedia, this is a requirement.
                     int k = 1;
                     while(cfe[1][x]*k < N){
-                        if(Math.pow(a,cfe[1][x]*k)%N==1){
+                        if(modPow(a,cfe[1][x]*k,N)==1){
                             System.out.println("candidate found in " + evaluations + " evaluations.");
                             return cfe[1][x]*k;
                         }
@@ -270,6 +255,10 @@ public class QuantumAlgorithm{
         }
     }
 
+    private static int modPow(int base, int exponent, int modulus){
+        return BigInteger.valueOf(base).modPow(BigInteger.valueOf(exponent),BigInteger.valueOf(modulus)).intValueExact();
+    }
+
     private static int[] continuedFractionExpansion(double value, int length){
         if(length == 0)
             return new int[]{};
@@ -116,6 +116,14 @@ public class QuantumGate implements Consumer<Qubit[]> {
     );
 
     private Complex[][] matrix;
+    /**the real parts of the gate matrix, stored row by row. This is {@code null} for gates not built from a matrix, such as controlled gates*/
+    final double[] real;
+    /**the imaginary parts of the gate matrix, stored row by row. This is {@code null} for gates not built from a matrix, such as controlled gates*/
+    final double[] imaginary;
+    /**the gate that is applied when all control qubits are |1⟩, or {@code this} if the gate is not controlled*/
+    final QuantumGate target;
+    /**the amount of control qubits, which are the last operands of the gate*/
+    final int controls;
     public int size;
 
     public QuantumGate(Complex[][] matrix){
@@ -124,30 +132,115 @@ public class QuantumGate implements Consumer<Qubit[]> {
 
         size = (int)Math.round(Math.log(matrix.length)/Math.log(2));
         this.matrix = matrix;
+
+        real = new double[matrix.length*matrix.length];
+        imaginary = new double[real.length];
+        for(int x = 0; x < matrix.length; x++)
+            for(int y = 0; y < matrix.length; y++){
+                real[x*matrix.length + y] = matrix[x][y].real();
+                imaginary[x*matrix.length + y] = matrix[x][y].imaginary();
+            }
+
+        target = this;
+        controls = 0;
         assert isUnitary();
     }
 
     /**
-     * Performs a complex number matrix multiplication in order to apply the gate on a set of complex numbers.
-     * @param input an array of complex numbers, representing the coefficients of all of the quantum states |0⟩⊗n to |1⟩⊗n
-     * @return the result of multiplying the given quantum state to the gate matrix. This will be of the same length as the input, and will represent the same coefficients as given.
+     * Creates a controlled gate without expanding it into a full matrix.
+     * @param target the gate to be performed when all of the controls are |1⟩. This must not be a controlled gate itself.
+     * @param controls the amount of control qubits
      */
-    Complex[] apply(Complex[] input){
-        if(input.length != 1<<size)
-            throw new IllegalArgumentException("input is of the wrong length.");
-
-        Complex[] result = new Complex[1<<size];
-        Complex[] sum = new Complex[result.length];
-        
-        for(int x = 0; x < result.length; x++) {
-            for (int y = 0; y < result.length; y++)
-                sum[y] = matrix[x][y].multiply(input[y]);
-            result[x] = sum(sum);
+    private QuantumGate(QuantumGate target, int controls){
+        this.target = target;
+        this.controls = controls;
+        size = target.size + controls;
+        real = null;
+        imaginary = null;
+    }
+
+    /**
+     * Creates a gate from the Cartesian form of its matrix. The {@code Complex} matrix is only built if it is needed.
+     * @param real the real parts of the matrix, stored row by row
+     * @param imaginary the imaginary parts of the matrix, stored row by row
+     */
+    QuantumGate(double[] real, double[] imaginary){
+        int length = (int)Math.round(Math.sqrt(real.length));
+        if(((length & (length - 1)) != 0) || length == 0 || length*length != real.length || imaginary.length != real.length)
+            throw new IllegalArgumentException("Matrix not of proper dimensions");
+
+        size = BitUtils.log2(length)-1;
+        this.real = real;
+        this.imaginary = imaginary;
+        target = this;
+        controls = 0;
+        assert isUnitary();
+    }
+
+    /**
+     * Creates a gate that is not controlled and is not described by a matrix. Subclasses using this must override {@link #matrix()}.
+     * @param size the amount of qubits that the gate operates on
+     */
+    QuantumGate(int size){
+        this.size = size;
+        target = this;
+        controls = 0;
+        real = null;
+        imaginary = null;
+    }
+
+    /**
+     * Creates the full matrix of this gate. For controlled gates, this matrix is built on every call.
+     * @return the matrix of this gate
+     */
+    Complex[][] matrix(){
+        if(controls == 0){
+            if(matrix == null){
+                Complex[][] m = new Complex[1<<size][1<<size];
+                for(int x = 0; x < m.length; x++)
+                    for(int y = 0; y < m.length; y++)
+                        m[x][y] = fromCartesian(real[x*m.length + y], imaginary[x*m.length + y]);
+                matrix = m;
+            }
+            return matrix;
         }
 
+        Complex[][] targetMatrix = target.matrix();
+        Complex[][] result = new Complex[1<<size][1<<size];
+        int offset = result.length - (1<<target.size);
+        for(int x = 0; x < result.length; x++)
+            for(int y = 0; y < result[x].length; y++)
+                if(x >= offset && y >= offset)
+                    result[x][y] = targetMatrix[x-offset][y-offset];
+                else
+                    result[x][y] = x==y ? ONE : ZERO;
         return result;
     }
 
+    /**
+     * Performs a complex number matrix multiplication in order to apply the gate on a set of coefficients given in Cartesian form.
+     * The input and output arrays must be distinct, and all of them must have a length of {@code 1<<size}.
+     * @param inReal the real parts of the coefficients of all of the quantum states |0⟩⊗n to |1⟩⊗n
+     * @param inImaginary the imaginary parts of the coefficients of all of the quantum states |0⟩⊗n to |1⟩⊗n
+     * @param outReal array to be filled with the real parts of the result of multiplying the coefficients to the gate matrix
+     * @param outImaginary array to be filled with the imaginary parts of the result of multiplying the coefficients to the gate matrix
+     */
+    void apply(double[] inReal, double[] inImaginary, double[] outReal, double[] outImaginary){
+        int length = 1<<size;
+        for(int x = 0; x < length; x++) {
+            double a = 0;
+            double b = 0;
+            for (int y = 0; y < length; y++) {
+                double mr = real[x*length + y];
+                double mi = imaginary[x*length + y];
+                a += mr*inReal[y] - mi*inImaginary[y];
+                b += mr*inImaginary[y] + mi*inReal[y];
+            }
+            outReal[x] = a;
+            outImaginary[x] = b;
+        }
+    }
+
     /**
      * Creates a phase-shift gate, on one Qubit, of order k, such that the shift is determined by 2pi/(2^k) radians. R(1) = Z
      * @param k the order of the phase-shift gate to be created
@@ -155,29 +248,17 @@ public class QuantumGate implements Consumer<Qubit[]> {
      */
     public static QuantumGate R(int k){
         double phi = (2*Math.PI)/(1<<k);
-        return new QuantumGate(
-            new Complex[][]{
-                    {ONE, ZERO},
-                    {ZERO, new Complex(1,phi)}
-            }
-        );
+        return new DiagonalGate(0, phi);
     }
 
     /**
-     * Creates a gate that is controlled by the last parameter passed in. This means the gate will perform iff the last Qubit is |1⟩
+     * Creates a gate that is controlled by the last parameter passed in. This means the gate will perform iff the last Qubit is |1⟩.
+     * Controlled gates remember their controls, so that only the coefficients where every control is |1⟩ are operated on.
      * @param gate The gate to be transformed into a controlled gate
      * @return The controlled gate.
      */
     public static QuantumGate C(QuantumGate gate){
-        int gateStates = 1<<gate.size;
-        Complex[][] matrix = new Complex[gateStates*2][gateStates*2];
-        for(int x = 0; x < matrix.length; x++)
-            for(int y = 0; y < matrix[x].length; y++)
-                if(x >= gateStates && y >= gateStates)
-                    matrix[x][y] = gate.matrix[x-gateStates][y-gateStates];
-                else
-                    matrix[x][y] = x==y ? ONE : ZERO;
-        return new QuantumGate(matrix);
+        return new QuantumGate(gate.target, gate.controls+1);
     }
 
     /**
@@ -185,7 +266,7 @@ public class QuantumGate implements Consumer<Qubit[]> {
      */
     public String toString(){
         StringBuilder total = new StringBuilder("");
-        for(Complex[] row : matrix){
+        for(Complex[] row : matrix()){
             total.append("[");
             for(int x = 0; x < row.length-1; x++)
                 total.append(row[x]).append(", ");
@@ -200,6 +281,10 @@ public class QuantumGate implements Consumer<Qubit[]> {
      * @return The inverse of this gate.
      */
     public QuantumGate inverse(){
+        if(controls != 0)
+            return new QuantumGate(target.inverse(), controls);
+
+        Complex[][] matrix = matrix();
         Complex[][] m = new Complex[matrix.length][matrix[0].length];
         for(int x = 0; x < matrix.length; x++)
             for(int y = 0; y < matrix[x].length; y++)
@@ -208,15 +293,31 @@ public class QuantumGate implements Consumer<Qubit[]> {
     }
 
     /**
-     * Applies this quantum gate to the operand qubis
+     * Applies this quantum gate to the operand qubis. While a {@code Circuit} is being recorded on the current thread,
+     * the gate is added to that circuit instead.
      * @param qubits the operand qubits
      */
     public void accept(Qubit... qubits){
         if(qubits.length != size)
             throw new IllegalArgumentException("Invalid number of operands");
 
+        Circuit circuit = Circuit.recording();
+        if(circuit != null)
+            circuit.add(this,qubits);
+        else
+            apply(qubits);
+    }
+
+    /**
+     * Applies this quantum gate to the operand qubits immediately, entangling them beforehand.
+     * @param qubits the operand qubits
+     */
+    void apply(Qubit... qubits){
+        for(int x = 1; x < qubits.length; x++)
+            if(qubits[x].simulator != qubits[0].simulator)
+                throw new IllegalArgumentException("Qubits belong to different simulators");
         for(int x = 1; x < qubits.length; x++)
-            QuantumState.entangle(qubits[0].delegate,qubits[x].delegate);
+            QuantumState.entangle(qubits[0],qubits[x]);
 
         qubits[0].delegate.apply(this,qubits);
     }
@@ -229,25 +330,32 @@ public class QuantumGate implements Consumer<Qubit[]> {
         if(qr.qubits.length != size)
             throw new IllegalArgumentException("Invalid number of operands");
 
-        qr.delegates().forEach(qs->QuantumState.entangle(qr.qubits[0].delegate,qs));
-
-        qr.qubits[0].delegate.apply(this,qr.qubits);
+        accept(qr.qubits);
     }
 
     /**
      * Determines whether this {@code QuantumGate} is unitary. This is a requirement of being a proper QuantumGate.
-     * This is determined by checking if, when multiplied by its inverse, this gate is equivalent to the identity matrix.
+     * This is determined by checking if, when multiplied by its conjugate transpose, this gate is equivalent to the identity matrix,
+     * up to rounding. The conjugate transpose is taken from the matrix directly, as {@link #inverse()} creates a gate, which is
+     * checked by this method.
      * @return whether this {@code QuantumGate} is unitary or not.
      */
     public boolean isUnitary(){
-        QuantumGate inverse = inverse();
-        Complex[] row = new Complex[1<<size];
-
-        for(int x = 0; x < 1<<size; x++)
-            for(int y = 0; y < 1<<size; y++){
-                for(int z = 0; z < 1<<size; z++)
-                    row[z] = matrix[x][z].multiply(inverse.matrix[z][y]);
-                if(!sum(row).equals( x==y ? ONE : ZERO))
+        if(controls != 0)
+            return target.isUnitary();
+
+        int dimension = 1<<size;
+        for(int x = 0; x < dimension; x++)
+            for(int y = 0; y < dimension; y++){
+                double re = 0;
+                double im = 0;
+                for(int z = 0; z < dimension; z++){
+                    int a = x*dimension + z;
+                    int b = y*dimension + z;
+                    re += real[a]*real[b] + imaginary[a]*imaginary[b];
+                    im += imaginary[a]*real[b] - real[a]*imaginary[b];
+                }
+                if(Math.abs(re - (x == y ? 1 : 0)) > 1e-9 || Math.abs(im) > 1e-9)
                     return false;
             }
 
@@ -1,5 +1,6 @@
 package quantum;
 
+import java.io.IOException;
 import java.util.*;
 import static quantum.Complex.*;
 
@@ -8,19 +9,40 @@ import static quantum.BitUtils.*;
 /**
  * Represents the state of one or many entangled qubits. Carries the coefficients of all states possible, and performs operations on them.
  * Altogether, this class performs all of the mathematics behind the quantum programming, and should be inaccessible through normal means.
+ *
+ * <p>
+ *     A state with few nonzero coefficients, such as a basis state, is stored sparsely as only those coefficients, so that its
+ *     operations take time in proportion to them instead of to every basis state. States are converted between the two forms
+ *     according to {@link Configuration#getSparseThreshold()} when they are created by entanglement, measurement or splitting,
+ *     and after each gate applied to a sparse state.
+ * </p>
  */
 class QuantumState {
-    /**contains the coefficients of all possible states from |0⟩⊗n to |1⟩⊗n*/
-    private final Complex[] state;
+    /**the most qubits that a dense state can hold*/
+    private static final int MAX_DENSE = 30;
+    /**the most qubits that a sparse state can hold*/
+    static final int MAX_SPARSE = 63;
+    /**the lock that is held while merging two states whose identity hash codes are the same*/
+    private static final Object TIE_LOCK = new Object();
+
+    /**contains the real parts of the coefficients of all possible states from |0⟩⊗n to |1⟩⊗n, or {@code null} while this state is sparse*/
+    private double[] real;
+    /**contains the imaginary parts of the coefficients of all possible states from |0⟩⊗n to |1⟩⊗n, or {@code null} while this state is sparse*/
+    private double[] imaginary;
+    /**contains only the nonzero coefficients while this state is sparse, or {@code null} while it is dense*/
+    private SparseAmplitudes sparse;
     /**contains all of the qubits represented by this state*/
     private final Qubit[] qubits;
+    /**whether the dense coefficients may also belong to a fork of this state, in which case they are copied before they are changed*/
+    private boolean shared;
 
     /**
-     * Creates an empty quantum state with arrays of null, but with the proper length.
+     * Creates an empty quantum state with coefficients of zero and qubits of null, but with the proper length.
      * @param q the amount of qubits to be in this {@code QuantumState}
      */
     private QuantumState(int q){
-        state = new Complex[1<<q];
+        real = new double[1<<q];
+        imaginary = new double[1<<q];
         qubits = new Qubit[q];
     }
 
@@ -30,24 +52,124 @@ class QuantumState {
      * @param initial the initial basis state of the {@code Qubit}
      */
     QuantumState(Qubit qubit, boolean initial){
-        state = initial?new Complex[]{ZERO,ONE}
-                       :new Complex[]{ONE,ZERO};
+        real = initial?new double[]{0,1}
+                      :new double[]{1,0};
+        imaginary = new double[2];
         qubits = new Qubit[]{qubit};
     }
 
-    static synchronized void entangle(QuantumState first, QuantumState second){
-        if(first == second)
-            return;
+    /**
+     * Creates a sparse quantum state with qubits of null.
+     * @param q the amount of qubits to be in this {@code QuantumState}
+     * @param amplitudes the nonzero coefficients of this {@code QuantumState}
+     */
+    private QuantumState(int q, SparseAmplitudes amplitudes){
+        sparse = amplitudes;
+        qubits = new Qubit[q];
+    }
 
-        QuantumState result = new QuantumState(first.qubits.length+second.qubits.length);
+    /**
+     * Creates a fork of a state, which shares its coefficients until either of them is changed. The caller must hold the lock of the
+     * state.
+     * @param other the state to be forked
+     */
+    private QuantumState(QuantumState other){
+        real = other.real;
+        imaginary = other.imaginary;
+        sparse = other.sparse;
+        qubits = new Qubit[other.qubits.length];
+        shared = other.shared = real != null;
+    }
+
+    /**
+     * Merges the states of two qubits into one, if they are not already in the same state. Only the two states are locked, in an order
+     * given by their identity hash codes, so that independent simulations never wait on each other. Since another thread may replace
+     * either state before both locks are held, the states of the qubits are looked up again once they are, and the merge is retried if
+     * they have changed.
+     * @param a the first qubit
+     * @param b the second qubit
+     */
+    static void entangle(Qubit a, Qubit b){
+        while(true){
+            QuantumState first = a.delegate;
+            QuantumState second = b.delegate;
+            if(first == second)
+                return;
+
+            int h1 = System.identityHashCode(first);
+            int h2 = System.identityHashCode(second);
+            if(h1 != h2){
+                if(merge(a, b, first, second, h1 < h2 ? first : second))
+                    return;
+            }
+            //states with the same hash code have no order of their own, so only one such pair is merged at a time
+            else synchronized(TIE_LOCK){
+                if(merge(a, b, first, second, first))
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Locks the states of two qubits, starting with {@code outer}, which is one of them, and merges them if they are still the states
+     * of the qubits.
+     * @return whether the states were merged
+     */
+    private static boolean merge(Qubit a, Qubit b, QuantumState first, QuantumState second, QuantumState outer){
+        QuantumState inner = outer == first ? second : first;
+        synchronized(outer){
+            synchronized(inner){
+                if(a.delegate != first || b.delegate != second)
+                    return false;
+                merge(first, second);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Replaces two states with their tensor product. The caller must hold the locks of both states.
+     */
+    private static void merge(QuantumState first, QuantumState second){
+        int q = first.qubits.length+second.qubits.length;
+        if(q > MAX_SPARSE)
+            throw new IllegalStateException("Too many entangled qubits");
+
+        QuantumState result;
+        long nonzero = (long)first.nonzero()*second.nonzero();
+        if(q > MAX_DENSE || prefersSparse(nonzero, q)){
+            first.toSparse();
+            second.toSparse();
+            SparseAmplitudes a = first.sparse;
+            SparseAmplitudes b = second.sparse;
+            SparseAmplitudes amplitudes = new SparseAmplitudes((int)Math.min(nonzero, 1<<20));
+            for(int y = 0; y < b.keys.length; y++)
+                if(b.keys[y] != SparseAmplitudes.EMPTY)
+                    for(int x = 0; x < a.keys.length; x++)
+                        if(a.keys[x] != SparseAmplitudes.EMPTY)
+                            amplitudes.add(b.keys[y] << first.qubits.length | a.keys[x],
+                                    a.real[x]*b.real[y] - a.imaginary[x]*b.imaginary[y],
+                                    a.real[x]*b.imaginary[y] + a.imaginary[x]*b.real[y]);
+            result = new QuantumState(q, amplitudes);
+        }
+        else{
+            first.toDense();
+            second.toDense();
+            QuantumState dense = new QuantumState(q);
+            Parallel.forRange(second.real.length, first.real.length, (from, to) -> {
+                for(int y = from; y < to; y++)
+                    for(int x = 0; x < first.real.length; x++){
+                        int i = y*first.real.length + x;
+                        dense.real[i] = first.real[x]*second.real[y] - first.imaginary[x]*second.imaginary[y];
+                        dense.imaginary[i] = first.real[x]*second.imaginary[y] + first.imaginary[x]*second.real[y];
+                    }
+            });
+            result = dense;
+        }
 
         System.arraycopy(first.qubits, 0, result.qubits, 0, first.qubits.length);
         System.arraycopy(second.qubits, 0, result.qubits, first.qubits.length, second.qubits.length);
 
-        for(int y = 0; y < second.state.length; y++)
-            for(int x = 0; x < first.state.length; x++)
-                result.state[y*first.state.length + x] = first.state[x].multiply(second.state[y]);
-
         for(int x = 0; x < result.qubits.length; x++) {
             result.qubits[x].delegate = result;
             result.qubits[x].index = x;
@@ -62,16 +184,36 @@ class QuantumState {
     synchronized Map<Qubit,Boolean> measure(Qubit... q) {
         Map<Qubit, Boolean> result = sample(q);
 
-        QuantumState mainState = new QuantumState(qubits.length-result.size());
         double constant = Math.sqrt(1/probabilityOf(result));
 
-        int currentState;
-        for(int x = 0; x < (1<<(qubits.length-result.size())); x++){
-            currentState = x;
-            for(int y = 0; y < qubits.length; y++)
-                if(result.containsKey(qubits[y]))
-                    currentState = insertBit(currentState,y,result.get(qubits[y]));
-            mainState.state[x] = state[currentState].multiply(constant);
+        long measured = 0;
+        long value = 0;
+        for(int y = 0; y < qubits.length; y++)
+            if(result.containsKey(qubits[y])){
+                measured |= 1L<<y;
+                if(result.get(qubits[y]))
+                    value |= 1L<<y;
+            }
+
+        QuantumState mainState;
+        if(sparse != null){
+            SparseAmplitudes amplitudes = new SparseAmplitudes(sparse.size);
+            for(int i = 0; i < sparse.keys.length; i++)
+                if(sparse.keys[i] != SparseAmplitudes.EMPTY && (sparse.keys[i] & measured) == value)
+                    amplitudes.add(extract(sparse.keys[i], ~measured), sparse.real[i]*constant, sparse.imaginary[i]*constant);
+            mainState = new QuantumState(qubits.length-result.size(), amplitudes);
+        }
+        else{
+            final QuantumState dense = new QuantumState(qubits.length-result.size());
+            final int mask = (int)measured;
+            final int bits = (int)value;
+            Parallel.forRange(dense.real.length, 1, (from, to) -> {
+                for(int x = from, s = deposit(from, ~mask); x < to; x++, s = ((s|mask)+1)&~mask){
+                    dense.real[x] = real[s|bits]*constant;
+                    dense.imaginary[x] = imaginary[s|bits]*constant;
+                }
+            });
+            mainState = dense;
         }
 
         int index = 0;
@@ -86,6 +228,10 @@ class QuantumState {
                 mainState.qubits[index++] = qubits[x];
             }
 
+        mainState.adapt();
+        if(Configuration.getSplitPolicy() != SplitPolicy.NEVER)
+            mainState.simplify();
+
         return result;
     }
 
@@ -99,16 +245,66 @@ class QuantumState {
      Map<Qubit,Boolean> sample(Qubit... qubits){
         Map<Qubit, Boolean> result = new HashMap<>();
 
-        double r = Math.random();
+        double r = Simulator.random(this.qubits[0].simulator).nextDouble();
         double total = 0;
-        int i = 0;
-        while(total < r)
-            total += state[i++].absoluteSquare();
+        long state = 0;
+        if(sparse != null){
+            for(int i = 0; i < sparse.keys.length && total < r; i++)
+                if(sparse.keys[i] != SparseAmplitudes.EMPTY){
+                    total += sparse.absoluteSquare(i);
+                    state = sparse.keys[i];
+                }
+        }
+        else{
+            int i = 0;
+            while(total < r)
+                total += absoluteSquare(i++);
+            state = i-1;
+        }
 
         for(Qubit q : qubits)
             if(q.delegate == this)
-                result.put(q, bit(i-1,q.index));
+                result.put(q, (state >>> q.index & 1) != 0);
+
+        return result;
+    }
+
+    /**
+     * Selects many random basis states at once, without collapse. The cumulative probabilities of all basis states are found once,
+     * after which each sample is a binary search, rather than a scan of the whole state.
+     * @param shots the amount of basis states to be selected
+     * @return independently selected basis states of this {@code QuantumState}, in which bit n is the basis of the nth qubit
+     */
+    synchronized long[] sample(int shots){
+        //the basis states that can be selected, in the order of their cumulative probabilities
+        long[] states;
+        double[] cumulative;
+        double total = 0;
+        if(sparse != null){
+            states = new long[sparse.size];
+            cumulative = new double[sparse.size];
+            for(int i = 0, j = 0; i < sparse.keys.length; i++)
+                if(sparse.keys[i] != SparseAmplitudes.EMPTY){
+                    states[j] = sparse.keys[i];
+                    cumulative[j++] = total += sparse.absoluteSquare(i);
+                }
+        }
+        else{
+            states = null;
+            cumulative = new double[real.length];
+            for(int i = 0; i < real.length; i++)
+                cumulative[i] = total += absoluteSquare(i);
+        }
 
+        double[] uniforms = new double[shots];
+        Simulator.random(qubits[0].simulator).nextDoubles(uniforms);
+        long[] result = new long[shots];
+        for(int x = 0; x < shots; x++){
+            int i = Arrays.binarySearch(cumulative, uniforms[x]*total);
+            //a miss gives the first basis state whose cumulative probability exceeds the random value
+            i = Math.min(i < 0 ? -i-1 : i, cumulative.length-1);
+            result[x] = states == null ? i : states[i];
+        }
         return result;
     }
 
@@ -118,30 +314,298 @@ class QuantumState {
      * @param operands an array of qubits that are within the {@code QuantumState}
      */
     synchronized void apply(QuantumGate gate, Qubit... operands) {
-        //create the bitMap array, an array with the index of bits such that the operands are the least significant
-        int[] map = new int[qubits.length];
-        int operandBits = 0;
-        int mapIndex;
-        for (mapIndex = 0; mapIndex < operands.length; mapIndex++)
-            operandBits ^= 1 << (map[mapIndex] = operands[mapIndex].index);
-        for(int i = 0; i < qubits.length; i++)
-            if(!bit(operandBits,i))
-                map[mapIndex++] = i;
-
-        for(int mappedState = 0; mappedState < (1<<qubits.length); mappedState += (1<<operands.length)){
-            Complex[] gateInput = new Complex[1<<operands.length];
-            int[] unmappedStates = new int[1<<operands.length];
-            for(int i = 0; i < gateInput.length; i++){
-                for(int x = 0; x < qubits.length; x++)
-                    unmappedStates[i] |= (bit(mappedState+i,x)?1:0)<<map[x];
-                gateInput[i] = state[unmappedStates[i]];
+        QuantumGate target = gate.target;
+        if(sparse != null)
+            applySparse(target, operands);
+        else{
+            int[] indices = new int[operands.length];
+            for(int x = 0; x < operands.length; x++)
+                indices[x] = operands[x].index;
+            own();
+            apply(real, imaginary, target, indices);
+        }
+
+        //gates on a single Qubit cannot change which qubits are entangled
+        if(operands.length > 1 && Configuration.getSplitPolicy() == SplitPolicy.EAGER)
+            simplify();
+    }
+
+    /**
+     * Applies a gate in place to a dense array of coefficients, choosing the fastest way that suits the gate.
+     * @param real the real parts of the coefficients
+     * @param imaginary the imaginary parts of the coefficients
+     * @param target gate to be applied, without controls
+     * @param operands the bit indices of the operands, starting with the {@code target.size} operands of the gate, followed by the controls
+     */
+    static void apply(double[] real, double[] imaginary, QuantumGate target, int[] operands){
+        int controls = 0;
+        for(int x = target.size; x < operands.length; x++)
+            controls |= 1<<operands[x];
+
+        if(target instanceof DiagonalGate)
+            applyDiagonal(real, imaginary, (DiagonalGate) target, operands, controls);
+        else if(target instanceof PermutationGate)
+            applyPermutation(real, imaginary, (PermutationGate) target, operands, controls);
+        else if(target.size == 1)
+            applySingle(real, imaginary, target.real, target.imaginary, operands[0], controls);
+        else if(target.size == 2)
+            applyTwo(real, imaginary, target.real, target.imaginary, operands[0], operands[1], controls);
+        else
+            applyDense(real, imaginary, target, operands, controls);
+    }
+
+    /**
+     * Applies a gate to a sparse state, by visiting each nonzero coefficient. Diagonal and permutation gates move or multiply each
+     * coefficient on its own, while any other gate is applied once to each group of coefficients that differ only in the operand bits
+     * and that holds at least one nonzero coefficient. The state is made dense again if the gate leaves it with too many nonzero coefficients.
+     * @param gate gate to be applied, without controls
+     * @param operands an array of qubits that are within the {@code QuantumState}, starting with the {@code gate.size} operands of the gate
+     */
+    private void applySparse(QuantumGate gate, Qubit[] operands){
+        long controls = 0;
+        for(int x = gate.size; x < operands.length; x++)
+            controls |= 1L<<operands[x].index;
+
+        //offsets[i] is the position of the gate's basis state i relative to a state in which all operands are |0⟩
+        final long[] offsets = new long[1<<gate.size];
+        for(int i = 0; i < offsets.length; i++)
+            for(int x = 0; x < gate.size; x++)
+                if(bit(i,x))
+                    offsets[i] |= 1L<<operands[x].index;
+        final long operandBits = offsets[offsets.length-1];
+
+        SparseAmplitudes result = new SparseAmplitudes(sparse.size);
+        if(gate instanceof DiagonalGate || gate instanceof PermutationGate){
+            for(int slot = 0; slot < sparse.keys.length; slot++){
+                long key = sparse.keys[slot];
+                if(key == SparseAmplitudes.EMPTY)
+                    continue;
+                double re = sparse.real[slot];
+                double im = sparse.imaginary[slot];
+                if((key & controls) != controls){
+                    result.add(key, re, im);
+                    continue;
+                }
+
+                int i = 0;
+                for(int x = 0; x < gate.size; x++)
+                    if((key & offsets[1<<x]) != 0)
+                        i |= 1<<x;
+                if(gate instanceof DiagonalGate){
+                    DiagonalGate diagonal = (DiagonalGate) gate;
+                    result.add(key, re*diagonal.phaseReal[i] - im*diagonal.phaseImaginary[i], re*diagonal.phaseImaginary[i] + im*diagonal.phaseReal[i]);
+                }
+                else
+                    result.add((key & ~operandBits) | offsets[((PermutationGate) gate).mapping[i]], re, im);
+            }
+        }
+        else{
+            SparseAmplitudes visited = new SparseAmplitudes(sparse.size);
+            double[] inReal = new double[offsets.length];
+            double[] inImaginary = new double[offsets.length];
+            double[] outReal = new double[offsets.length];
+            double[] outImaginary = new double[offsets.length];
+            for(int slot = 0; slot < sparse.keys.length; slot++){
+                long key = sparse.keys[slot];
+                if(key == SparseAmplitudes.EMPTY)
+                    continue;
+                if((key & controls) != controls){
+                    result.add(key, sparse.real[slot], sparse.imaginary[slot]);
+                    continue;
+                }
+
+                long base = key & ~operandBits;
+                if(visited.find(base) >= 0)
+                    continue;
+                visited.add(base, 0, 0);
+
+                for(int i = 0; i < offsets.length; i++){
+                    int s = sparse.find(base|offsets[i]);
+                    inReal[i] = s < 0 ? 0 : sparse.real[s];
+                    inImaginary[i] = s < 0 ? 0 : sparse.imaginary[s];
+                }
+                gate.apply(inReal, inImaginary, outReal, outImaginary);
+                for(int i = 0; i < offsets.length; i++)
+                    if(!isZero(outReal[i], outImaginary[i]))
+                        result.add(base|offsets[i], outReal[i], outImaginary[i]);
             }
-            Complex[] gateOutput = gate.apply(gateInput);
-            for(int i = 0; i < gateOutput.length; i++)
-                state[unmappedStates[i]] = gateOutput[i];
         }
 
-        simplify();
+        sparse = result;
+        adapt();
+    }
+
+    /**
+     * Applies a single-{@code Qubit} gate in place, by walking each pair of coefficients that differ only in the target bit.
+     * Only the pairs in which every control bit is set are visited.
+     * @param real the real parts of the coefficients
+     * @param imaginary the imaginary parts of the coefficients
+     * @param gateReal the real parts of the 2x2 matrix to be applied, stored row by row
+     * @param gateImaginary the imaginary parts of the 2x2 matrix to be applied, stored row by row
+     * @param target bit index of the operand
+     * @param controls a mask of the indices of the control qubits, or 0 if there are none
+     */
+    static void applySingle(double[] real, double[] imaginary, double[] gateReal, double[] gateImaginary, int target, int controls){
+        final Kernels kernels = Kernels.get();
+        final int stride = 1<<target;
+        //coefficients are visited in runs of consecutive indices, up to the lowest target or control bit
+        final int run = Integer.lowestOneBit(stride|controls);
+        final int skip = stride|controls|(run-1);
+
+        Parallel.forRange(real.length>>>Integer.bitCount(skip), run<<1, (from, to) ->
+                kernels.single(real, imaginary, gateReal, gateImaginary, stride, controls, run, skip, from, to));
+    }
+
+    /**
+     * Applies a two-{@code Qubit} gate in place, by walking each group of four coefficients that differ only in the operand bits.
+     * Only the groups in which every control bit is set are visited.
+     * @param real the real parts of the coefficients
+     * @param imaginary the imaginary parts of the coefficients
+     * @param gateReal the real parts of the 4x4 matrix to be applied, stored row by row
+     * @param gateImaginary the imaginary parts of the 4x4 matrix to be applied, stored row by row
+     * @param first bit index of the first operand
+     * @param second bit index of the second operand
+     * @param controls a mask of the indices of the control qubits, or 0 if there are none
+     */
+    static void applyTwo(double[] real, double[] imaginary, double[] gateReal, double[] gateImaginary, int first, int second, int controls){
+        final Kernels kernels = Kernels.get();
+        final int[] offsets = {0, 1<<first, 1<<second, (1<<first)|(1<<second)};
+        final int run = Integer.lowestOneBit(offsets[3]|controls);
+        final int skip = offsets[3]|controls|(run-1);
+
+        Parallel.forRange(real.length>>>Integer.bitCount(skip), run<<2, (from, to) ->
+                kernels.two(real, imaginary, gateReal, gateImaginary, offsets, controls, run, skip, from, to));
+    }
+
+    /**
+     * Applies a diagonal gate in place, by multiplying each coefficient by the phase factor of its basis state within the gate.
+     * Basis states that the gate leaves unchanged, and coefficients in which any control bit is not set, are never visited.
+     * @param real the real parts of the coefficients
+     * @param imaginary the imaginary parts of the coefficients
+     * @param gate gate to be applied, without controls
+     * @param operands the bit indices of the operands, starting with the {@code gate.size} operands of the gate
+     * @param controls a mask of the indices of the control qubits, or 0 if there are none
+     */
+    static void applyDiagonal(double[] real, double[] imaginary, DiagonalGate gate, int[] operands, int controls){
+        int fixed = controls;
+        for(int x = 0; x < gate.size; x++)
+            fixed |= 1<<operands[x];
+        final int operandBits = fixed;
+
+        //the gate's basis states that change phase, and their positions relative to a state in which all operands are |0⟩
+        int active = 0;
+        final int[] offsets = new int[1<<gate.size];
+        final double[] phaseReal = new double[1<<gate.size];
+        final double[] phaseImaginary = new double[1<<gate.size];
+        for(int i = 0; i < offsets.length; i++)
+            if(!gate.isIdentity(i)){
+                phaseReal[active] = gate.phaseReal[i];
+                phaseImaginary[active] = gate.phaseImaginary[i];
+                for(int x = 0; x < gate.size; x++)
+                    if(bit(i,x))
+                        offsets[active] |= 1<<operands[x];
+                active++;
+            }
+        final int count = active;
+        final Kernels kernels = Kernels.get();
+        final int run = Integer.lowestOneBit(operandBits);
+        final int skip = operandBits|(run-1);
+
+        Parallel.forRange(real.length>>>Integer.bitCount(skip), run*count, (from, to) ->
+                kernels.diagonal(real, imaginary, phaseReal, phaseImaginary, offsets, count, controls, run, skip, from, to));
+    }
+
+    /**
+     * Applies a permutation gate in place, by moving each coefficient to the basis state it is mapped to.
+     * Basis states that the gate maps to themselves, and coefficients in which any control bit is not set, are never visited.
+     * @param real the real parts of the coefficients
+     * @param imaginary the imaginary parts of the coefficients
+     * @param gate gate to be applied, without controls
+     * @param operands the bit indices of the operands, starting with the {@code gate.size} operands of the gate
+     * @param controls a mask of the indices of the control qubits, or 0 if there are none
+     */
+    static void applyPermutation(double[] real, double[] imaginary, PermutationGate gate, int[] operands, int controls){
+        int fixed = controls;
+        for(int x = 0; x < gate.size; x++)
+            fixed |= 1<<operands[x];
+        final int operandBits = fixed;
+
+        int[] offsets = new int[1<<gate.size];
+        for(int i = 0; i < offsets.length; i++)
+            for(int x = 0; x < gate.size; x++)
+                if(bit(i,x))
+                    offsets[i] |= 1<<operands[x];
+
+        //the positions that the gate moves coefficients from and to, relative to a state in which all operands are |0⟩
+        int moved = 0;
+        final int[] source = new int[offsets.length];
+        final int[] destination = new int[offsets.length];
+        for(int i = 0; i < offsets.length; i++)
+            if(gate.mapping[i] != i){
+                source[moved] = offsets[i];
+                destination[moved] = offsets[gate.mapping[i]];
+                moved++;
+            }
+        final int count = moved;
+
+        Parallel.forRange(real.length>>>Integer.bitCount(operandBits), count, (from, to) -> {
+            double[] movedReal = new double[count];
+            double[] movedImaginary = new double[count];
+            for(int k = from, group = deposit(from, ~operandBits); k < to; k++, group = ((group|operandBits)+1)&~operandBits){
+                final int base = group|controls;
+                for(int i = 0; i < count; i++){
+                    movedReal[i] = real[base|source[i]];
+                    movedImaginary[i] = imaginary[base|source[i]];
+                }
+                for(int i = 0; i < count; i++){
+                    real[base|destination[i]] = movedReal[i];
+                    imaginary[base|destination[i]] = movedImaginary[i];
+                }
+            }
+        });
+    }
+
+    /**
+     * Applies a gate of any size through multiplication with its full matrix, one group of {@code 1<<gate.size} coefficients at a time.
+     * Only the groups in which every control bit is set are visited.
+     * @param real the real parts of the coefficients
+     * @param imaginary the imaginary parts of the coefficients
+     * @param gate gate to be applied, without controls
+     * @param operands the bit indices of the operands, starting with the {@code gate.size} operands of the gate
+     * @param controls a mask of the indices of the control qubits, or 0 if there are none
+     */
+    static void applyDense(double[] real, double[] imaginary, QuantumGate gate, int[] operands, int controls){
+        //offsets[i] is the position of the gate's basis state i relative to a state in which all operands are |0⟩
+        final int[] offsets = new int[1<<gate.size];
+        int fixed = controls;
+        for(int x = 0; x < gate.size; x++)
+            fixed |= 1<<operands[x];
+        final int operandBits = fixed;
+        for(int i = 0; i < offsets.length; i++)
+            for(int x = 0; x < gate.size; x++)
+                if(bit(i,x))
+                    offsets[i] |= 1<<operands[x];
+
+        Parallel.forRange(real.length>>>Integer.bitCount(operandBits), offsets.length, (from, to) -> {
+            double[] inReal = new double[offsets.length];
+            double[] inImaginary = new double[offsets.length];
+            double[] outReal = new double[offsets.length];
+            double[] outImaginary = new double[offsets.length];
+
+            //visits every state in which all operands and controls are |0⟩, in increasing order
+            for(int k = from, group = deposit(from, ~operandBits); k < to; k++, group = ((group|operandBits)+1)&~operandBits){
+                final int base = group|controls;
+                for(int i = 0; i < offsets.length; i++){
+                    inReal[i] = real[base|offsets[i]];
+                    inImaginary[i] = imaginary[base|offsets[i]];
+                }
+                gate.apply(inReal, inImaginary, outReal, outImaginary);
+                for(int i = 0; i < offsets.length; i++){
+                    real[base|offsets[i]] = outReal[i];
+                    imaginary[base|offsets[i]] = outImaginary[i];
+                }
+            }
+        });
     }
 
     /**
@@ -150,11 +614,31 @@ class QuantumState {
      * After execution, the qubits and coefficients of this {@code QuantumState} may have changed, but there will be no unentangled qubits.
      */
     private synchronized void simplify(){
-        List<List<Integer>> dependencies = getDependencies();
+        List<List<Integer>> dependencies = sparse != null ? getSparseDependencies() : getDependencies();
 
         if(dependencies.size() <= 1)
             return;
 
+        QuantumState[] quantumStates = sparse != null ? splitSparse(dependencies) : splitDense(dependencies);
+
+        for(int x = 0; x < quantumStates.length; x++){
+            for(int y = 0; y < dependencies.get(x).size(); y++) {
+                int i = dependencies.get(x).get(y);
+                qubits[i].delegate = quantumStates[x];
+                qubits[i].index = y;
+                quantumStates[x].qubits[y] = qubits[i];
+            }
+            quantumStates[x].adapt();
+        }
+    }
+
+    /**
+     * Creates a dense state for each group of entanglement, in which the qubits outside the group are fixed to the first of their
+     * basis states that has a nonzero probability.
+     * @param dependencies the groups of entanglement, as given by {@link #getDependencies()}
+     * @return a state for each group, with qubits of null
+     */
+    private QuantumState[] splitDense(List<List<Integer>> dependencies){
         QuantumState[] quantumStates = new QuantumState[dependencies.size()];
         for(int x = 0; x < quantumStates.length; x++)
             quantumStates[x] = new QuantumState(dependencies.get(x).size());
@@ -174,21 +658,65 @@ class QuantumState {
 
             constant = Math.sqrt(constant);
 
+            //the phase of the first coefficient is removed from all groups but the last, so that the global phase is kept
+            double phaseReal = 1;
+            double phaseImaginary = 0;
+            double magnitude = Math.sqrt(absoluteSquare(0));
+            if(x != quantumStates.length-1 && magnitude > 0){
+                phaseReal = real[0]/magnitude;
+                phaseImaginary = -imaginary[0]/magnitude;
+            }
+
             for(int y = 0; y < (1<<dependencies.get(x).size()); y++){
                 int s0 = start-1;
                 for(int z = 0; z < dependencies.get(x).size(); z++)
                     s0 = insertBit(s0, dependencies.get(x).get(z), bit(y, z));
-                quantumStates[x].state[y] = new Complex((state[s0].r)/constant,state[s0].theta - ((x==quantumStates.length-1)?0:state[0].theta));
+                quantumStates[x].real[y] = (real[s0]*phaseReal - imaginary[s0]*phaseImaginary)/constant;
+                quantumStates[x].imaginary[y] = (real[s0]*phaseImaginary + imaginary[s0]*phaseReal)/constant;
             }
         }
+        return quantumStates;
+    }
 
-        for(int x = 0; x < quantumStates.length; x++)
-            for(int y = 0; y < dependencies.get(x).size(); y++) {
-                int i = dependencies.get(x).get(y);
-                qubits[i].delegate = quantumStates[x];
-                qubits[i].index = y;
-                quantumStates[x].qubits[y] = qubits[i];
+    /**
+     * Creates a sparse state for each group of entanglement, in which the qubits outside the group are fixed to their basis in the
+     * largest coefficient. The phase of that coefficient is removed from all groups but the last, so that the global phase is kept.
+     * @param dependencies the groups of entanglement, as given by {@link #getSparseDependencies()}
+     * @return a state for each group, with qubits of null
+     */
+    private QuantumState[] splitSparse(List<List<Integer>> dependencies){
+        int reference = largest();
+        long fixed = sparse.keys[reference];
+        double magnitude = Math.sqrt(sparse.absoluteSquare(reference));
+
+        QuantumState[] quantumStates = new QuantumState[dependencies.size()];
+        for(int x = 0; x < quantumStates.length; x++){
+            long mask = 0;
+            for(int i : dependencies.get(x))
+                mask |= 1L<<i;
+
+            double phaseReal = 1;
+            double phaseImaginary = 0;
+            if(x != quantumStates.length-1){
+                phaseReal = sparse.real[reference]/magnitude;
+                phaseImaginary = -sparse.imaginary[reference]/magnitude;
             }
+
+            double norm = 0;
+            for(int i = 0; i < sparse.keys.length; i++)
+                if(sparse.keys[i] != SparseAmplitudes.EMPTY && (sparse.keys[i] & ~mask) == (fixed & ~mask))
+                    norm += sparse.absoluteSquare(i);
+            double constant = Math.sqrt(norm);
+
+            SparseAmplitudes amplitudes = new SparseAmplitudes(1);
+            for(int i = 0; i < sparse.keys.length; i++)
+                if(sparse.keys[i] != SparseAmplitudes.EMPTY && (sparse.keys[i] & ~mask) == (fixed & ~mask))
+                    amplitudes.add(extract(sparse.keys[i], mask),
+                            (sparse.real[i]*phaseReal - sparse.imaginary[i]*phaseImaginary)/constant,
+                            (sparse.real[i]*phaseImaginary + sparse.imaginary[i]*phaseReal)/constant);
+            quantumStates[x] = new QuantumState(dependencies.get(x).size(), amplitudes);
+        }
+        return quantumStates;
     }
 
     /**
@@ -197,9 +725,24 @@ class QuantumState {
      */
     public String toString(){
         StringBuilder total = new StringBuilder();
-        for(int x = 0; x < state.length; x++)
-            if(!(state[x].r < Complex.DELTA))
-                total.append(state[x]).append("|").append(BitUtils.toString(toBooleanArray(x,qubits.length))).append("⟩\n");
+        if(sparse != null){
+            long[] states = new long[sparse.size];
+            for(int i = 0, j = 0; i < sparse.keys.length; i++)
+                if(sparse.keys[i] != SparseAmplitudes.EMPTY)
+                    states[j++] = sparse.keys[i];
+            Arrays.sort(states);
+            for(long state : states){
+                int i = sparse.find(state);
+                boolean[] bits = new boolean[qubits.length];
+                for(int x = 0; x < bits.length; x++)
+                    bits[x] = (state >>> x & 1) != 0;
+                total.append(fromCartesian(sparse.real[i],sparse.imaginary[i])).append("|").append(BitUtils.toString(bits)).append("⟩\n");
+            }
+            return total.toString();
+        }
+        for(int x = 0; x < real.length; x++)
+            if(!(Math.sqrt(absoluteSquare(x)) < Complex.DELTA))
+                total.append(fromCartesian(real[x],imaginary[x])).append("|").append(BitUtils.toString(toBooleanArray(x,qubits.length))).append("⟩\n");
         return total.toString();
     }
 
@@ -211,17 +754,50 @@ class QuantumState {
     private synchronized boolean areEntangled(int i1, int i2){
         for(int x = 0; x < 1<<(qubits.length-2); x++){
             final int s = insertBit(insertBit(x,i1,false),i2,false);
-            if(!state[s].multiply(state[s|(1<<i1)|(1<<i2)]).equals(
-                    state[s|(1<<i1)].multiply(state[s|(1<<i2)])))
+            final int s1 = s|(1<<i1);
+            final int s2 = s|(1<<i2);
+            final int s12 = s1|s2;
+            double x0 = (real[s]*real[s12] - imaginary[s]*imaginary[s12]) - (real[s1]*real[s2] - imaginary[s1]*imaginary[s2]);
+            double y0 = (real[s]*imaginary[s12] + imaginary[s]*real[s12]) - (real[s1]*imaginary[s2] + imaginary[s1]*real[s2]);
+            if(!(x0*x0+y0*y0 < DELTA*DELTA))
                 return true;
         }
         return false;
     }
 
+    /**
+     * Tests whether a group of qubits is unentangled with the rest of this state. This is the case iff every coefficient
+     * factors into a coefficient of the group and a coefficient of the rest, which is checked against the largest coefficient.
+     * @param group indices of the qubits in the group
+     * @return whether the group can be split from the rest of the {@code QuantumState}
+     */
+    private synchronized boolean isSeparable(List<Integer> group){
+        int mask = 0;
+        for(int i : group)
+            mask |= 1<<i;
+
+        int reference = 0;
+        for(int s = 1; s < real.length; s++)
+            if(absoluteSquare(s) > absoluteSquare(reference))
+                reference = s;
+
+        for(int s = 0; s < real.length; s++){
+            final int a = (s&mask)|(reference&~mask);
+            final int b = (reference&mask)|(s&~mask);
+            double x0 = (real[s]*real[reference] - imaginary[s]*imaginary[reference]) - (real[a]*real[b] - imaginary[a]*imaginary[b]);
+            double y0 = (real[s]*imaginary[reference] + imaginary[s]*real[reference]) - (real[a]*imaginary[b] + imaginary[a]*real[b]);
+            if(!(x0*x0+y0*y0 < DELTA*DELTA))
+                return false;
+        }
+        return true;
+    }
+
     /**
      * Determines a list of all groupings of entangled Qubits within this state. Under normal conditions
      * all qubits would be entangled in a single group, but after a gate, this could change before simplification.
-     * @return A list, with the groupings inside of them, using integers as indices to represent the qubits.
+     * Qubits found to be entangled with a member of a group join that group, and every group is then checked to be separable,
+     * as entanglement such as that of |000⟩ + |111⟩ is invisible to any pair of qubits. Groups that fail the check are merged together.
+     * @return A list, with the groupings inside of them, using integers as indices to represent the qubits in increasing order.
      */
     private synchronized List<List<Integer>> getDependencies(){
         List<List<Integer>> result = new ArrayList<>();
@@ -232,17 +808,89 @@ class QuantumState {
                 placed[x] = true;
                 List<Integer> segment = new ArrayList<>();
                 segment.add(x);
-                for(int y = x+1; y < qubits.length; y++)
-                    if(!placed[y] && areEntangled(x,y)){
-                        segment.add(y);
-                        placed[y] = true;
-                    }
+                for(int i = 0; i < segment.size(); i++)
+                    for(int y = x+1; y < qubits.length; y++)
+                        if(!placed[y] && areEntangled(Math.min(segment.get(i),y),Math.max(segment.get(i),y))){
+                            segment.add(y);
+                            placed[y] = true;
+                        }
+                Collections.sort(segment);
                 result.add(segment);
             }
 
+        if(result.size() <= 1)
+            return result;
+
+        List<Integer> remainder = new ArrayList<>();
+        for(Iterator<List<Integer>> it = result.iterator(); it.hasNext();){
+            List<Integer> segment = it.next();
+            if(!isSeparable(segment)){
+                remainder.addAll(segment);
+                it.remove();
+            }
+        }
+        if(!remainder.isEmpty()){
+            Collections.sort(remainder);
+            result.add(remainder);
+        }
+
+        return result;
+    }
+
+    /**
+     * Determines which qubits of this sparse state can be split off on their own. Finding larger groups would need the pairwise test
+     * of {@link #getDependencies()}, which visits every basis state, so the qubits that cannot be split off alone stay together.
+     * @return A list, with the groupings inside of them, using integers as indices to represent the qubits in increasing order.
+     */
+    private synchronized List<List<Integer>> getSparseDependencies(){
+        List<List<Integer>> result = new ArrayList<>();
+        List<Integer> remainder = new ArrayList<>();
+        for(int x = 0; x < qubits.length; x++)
+            if(isSeparable(1L<<x))
+                result.add(Collections.singletonList(x));
+            else
+                remainder.add(x);
+        if(!remainder.isEmpty())
+            result.add(remainder);
         return result;
     }
 
+    /**
+     * Tests whether a group of qubits is unentangled with the rest of this sparse state. This is the case iff the basis states with
+     * nonzero coefficients are every combination of those of the group and those of the rest, and every coefficient factors into a
+     * coefficient of the group and a coefficient of the rest, which is checked against the largest coefficient.
+     * @param mask the bits of the qubits in the group
+     * @return whether the group can be split from the rest of the {@code QuantumState}
+     */
+    private synchronized boolean isSeparable(long mask){
+        SparseAmplitudes inside = new SparseAmplitudes(sparse.size);
+        SparseAmplitudes outside = new SparseAmplitudes(sparse.size);
+        for(int i = 0; i < sparse.keys.length; i++)
+            if(sparse.keys[i] != SparseAmplitudes.EMPTY){
+                inside.add(sparse.keys[i] & mask, 0, 0);
+                outside.add(sparse.keys[i] & ~mask, 0, 0);
+            }
+        if((long)inside.size*outside.size != sparse.size)
+            return false;
+
+        int reference = largest();
+        long r = sparse.keys[reference];
+        double rr = sparse.real[reference];
+        double ri = sparse.imaginary[reference];
+        for(int s = 0; s < sparse.keys.length; s++){
+            long key = sparse.keys[s];
+            if(key == SparseAmplitudes.EMPTY)
+                continue;
+            int a = sparse.find((key & mask)|(r & ~mask));
+            int b = sparse.find((r & mask)|(key & ~mask));
+            double x0 = (sparse.real[s]*rr - sparse.imaginary[s]*ri) - (sparse.real[a]*sparse.real[b] - sparse.imaginary[a]*sparse.imaginary[b]);
+            double y0 = (sparse.real[s]*ri + sparse.imaginary[s]*rr) - (sparse.real[a]*sparse.imaginary[b] + sparse.imaginary[a]*sparse.real[b]);
+            if(!(x0*x0+y0*y0 < DELTA*DELTA))
+                return false;
+        }
+        return true;
+    }
+
     /**
      * Determines the probability of finding a particular state of Qubits within this {@code QuantumState}. All qubits outside the state
      * will be ignored in the calculation. This probability will be on the interval [0,1]
@@ -250,20 +898,250 @@ class QuantumState {
      * @return the probability of finding the state {@code s} within the {@code QuantumState}
      */
     synchronized double probabilityOf(Map<Qubit,Boolean> s){
-        long inner = s.keySet().stream().filter(q->q.delegate==this).count();
-        if(inner == 0)
+        long fixed = 0;
+        long value = 0;
+        for(int y = 0; y < qubits.length; y++)
+            if(s.containsKey(qubits[y])){
+                fixed |= 1L<<y;
+                if(s.get(qubits[y]))
+                    value |= 1L<<y;
+            }
+        if(fixed == 0)
             return 1;
 
-        double probability = 0;
-        int currentState;
-        for(int x = 0; x < (1<<(qubits.length-inner)); x++){
-            currentState = x;
-            for(int y = 0; y < qubits.length; y++)
-                if(s.containsKey(qubits[y]))
-                    currentState = insertBit(currentState,y,s.get(qubits[y]));
-            probability += state[currentState].absoluteSquare();
+        if(sparse != null){
+            double probability = 0;
+            for(int i = 0; i < sparse.keys.length; i++)
+                if(sparse.keys[i] != SparseAmplitudes.EMPTY && (sparse.keys[i] & fixed) == value)
+                    probability += sparse.absoluteSquare(i);
+            return probability;
         }
 
-        return probability;
+        final int mask = (int)fixed;
+        final int bits = (int)value;
+        return Parallel.sum(real.length>>>Integer.bitCount(mask), 1, (from, to) -> {
+            double probability = 0;
+            for(int x = from, i = deposit(from, ~mask); x < to; x++, i = ((i|mask)+1)&~mask)
+                probability += absoluteSquare(i|bits);
+            return probability;
+        });
+    }
+
+    /**
+     * Tests whether all qubits of this {@code QuantumState} are among a set, so that the set can be saved or forked on its own.
+     * @param group a set of qubits
+     * @return whether no qubit of this state is outside of the set
+     */
+    synchronized boolean isWithin(Set<Qubit> group){
+        for(Qubit q : qubits)
+            if(!group.contains(q))
+                return false;
+        return true;
+    }
+
+    /**
+     * Creates a fork of this {@code QuantumState} for new qubits, which shares its coefficients until either of the two states changes
+     * them. Sparse coefficients are never changed in place, so only dense ones are ever copied.
+     * @param positions the position of each qubit of the register being forked
+     * @param qubits the new qubits of the register, in which those of the fork are placed
+     */
+    synchronized void fork(Map<Qubit,Integer> positions, Qubit[] qubits){
+        QuantumState fork = new QuantumState(this);
+        for(int x = 0; x < this.qubits.length; x++){
+            Qubit qubit = qubits[positions.get(this.qubits[x])];
+            qubit.delegate = fork;
+            qubit.index = x;
+            fork.qubits[x] = qubit;
+        }
+    }
+
+    /**
+     * Copies the dense coefficients of this {@code QuantumState} if they are shared with a fork, so that they can be changed in place.
+     */
+    private void own(){
+        if(!shared)
+            return;
+        real = real.clone();
+        imaginary = imaginary.clone();
+        shared = false;
+    }
+
+    /**
+     * Writes this {@code QuantumState} to a snapshot: the positions of its qubits within the register being saved, followed by its
+     * coefficients in the form that they are stored in.
+     * @param out the snapshot being written
+     * @param positions the position of each qubit of the register being saved
+     * @throws IOException if the snapshot cannot be written
+     */
+    synchronized void write(Snapshot.Output out, Map<Qubit,Integer> positions) throws IOException{
+        out.putInt(qubits.length);
+        for(Qubit q : qubits){
+            Integer position = positions.get(q);
+            if(position == null)
+                throw new IllegalArgumentException("A register that is entangled with qubits outside of it cannot be saved");
+            out.putInt(position);
+        }
+
+        if(sparse != null){
+            long[] keys = new long[sparse.size];
+            double[] re = new double[sparse.size];
+            double[] im = new double[sparse.size];
+            for(int i = 0, j = 0; i < sparse.keys.length; i++)
+                if(sparse.keys[i] != SparseAmplitudes.EMPTY){
+                    keys[j] = sparse.keys[i];
+                    re[j] = sparse.real[i];
+                    im[j++] = sparse.imaginary[i];
+                }
+            out.putByte((byte)1);
+            out.putInt(keys.length);
+            out.putLongs(keys, keys.length);
+            out.putDoubles(re, re.length);
+            out.putDoubles(im, im.length);
+        }
+        else{
+            out.putByte((byte)0);
+            out.putDoubles(real, real.length);
+            out.putDoubles(imaginary, imaginary.length);
+        }
+    }
+
+    /**
+     * Reads the coefficients of a {@code QuantumState} that was written by {@link #write(Snapshot.Output, Map)}, once the positions of its
+     * qubits have been read. The qubits of the state are left {@code null}, until they are placed with {@link #place(int[], Qubit[])}.
+     * @param in the snapshot being read
+     * @param q the amount of qubits of the state
+     * @return the state
+     * @throws IOException if the snapshot cannot be read, or does not hold a valid state
+     */
+    static QuantumState read(Snapshot.Input in, int q) throws IOException{
+        byte form = in.getByte();
+        if(form == 1){
+            int size = in.getInt();
+            if(size < 1 || q < Integer.SIZE && size > 1L<<q || (long)size * (Long.BYTES + 2*Double.BYTES) > in.remaining())
+                throw new IOException("Invalid amount of coefficients in snapshot");
+            long[] keys = new long[size];
+            double[] re = new double[size];
+            double[] im = new double[size];
+            in.getLongs(keys);
+            in.getDoubles(re);
+            in.getDoubles(im);
+            SparseAmplitudes amplitudes = new SparseAmplitudes(size);
+            for(int i = 0; i < size; i++){
+                if(keys[i] >>> q != 0 || amplitudes.find(keys[i]) >= 0)
+                    throw new IOException("Invalid basis state in snapshot");
+                amplitudes.add(keys[i], re[i], im[i]);
+            }
+            return new QuantumState(q, amplitudes);
+        }
+        if(form == 0 && q <= MAX_DENSE){
+            if((2L*Double.BYTES << q) > in.remaining())
+                throw new IOException("Snapshot ends early");
+            QuantumState state = new QuantumState(q);
+            in.getDoubles(state.real);
+            in.getDoubles(state.imaginary);
+            return state;
+        }
+        throw new IOException("Invalid form of state in snapshot");
+    }
+
+    /**
+     * Places the qubits of a register in a {@code QuantumState} that was read from a snapshot.
+     * @param positions the position in the register of each qubit of this state, in the order of their bits
+     * @param qubits the qubits of the register
+     */
+    void place(int[] positions, Qubit[] qubits){
+        for(int x = 0; x < positions.length; x++){
+            Qubit qubit = qubits[positions[x]];
+            qubit.delegate = this;
+            qubit.index = x;
+            this.qubits[x] = qubit;
+        }
+    }
+
+    /**
+     * Performs the absolute square operation on a coefficient of this {@code QuantumState}
+     * @param i the basis state whose coefficient is to be used
+     * @return the absolute square of the coefficient, which is the probability of the basis state
+     */
+    private double absoluteSquare(int i){
+        return real[i]*real[i] + imaginary[i]*imaginary[i];
+    }
+
+    private static boolean isZero(double re, double im){
+        return re*re + im*im < DELTA*DELTA;
+    }
+
+    /**
+     * @return the amount of nonzero coefficients of this {@code QuantumState}
+     */
+    private int nonzero(){
+        if(sparse != null)
+            return sparse.size;
+        int count = 0;
+        for(int i = 0; i < real.length; i++)
+            if(!isZero(real[i], imaginary[i]))
+                count++;
+        return count;
+    }
+
+    /**
+     * @return the slot of the largest coefficient of this sparse {@code QuantumState}
+     */
+    private int largest(){
+        int reference = -1;
+        for(int i = 0; i < sparse.keys.length; i++)
+            if(sparse.keys[i] != SparseAmplitudes.EMPTY && (reference < 0 || sparse.absoluteSquare(i) > sparse.absoluteSquare(reference)))
+                reference = i;
+        return reference;
+    }
+
+    /**
+     * Decides whether a state should be stored sparsely. This is the case when it has few enough nonzero coefficients, and they are a
+     * small fraction of all of its basis states.
+     * @param nonzero the amount of nonzero coefficients
+     * @param q the amount of qubits
+     * @return whether a state with these properties is better off sparse
+     */
+    private static boolean prefersSparse(long nonzero, int q){
+        return nonzero <= Configuration.getSparseThreshold() && (q > MAX_DENSE || nonzero*8 <= 1L<<q);
+    }
+
+    /**
+     * Converts this {@code QuantumState} to whichever of the dense and the sparse form suits its amount of nonzero coefficients.
+     */
+    private void adapt(){
+        if(sparse != null){
+            if(qubits.length <= MAX_DENSE && !prefersSparse(sparse.size, qubits.length))
+                toDense();
+        }
+        else if(prefersSparse(nonzero(), qubits.length))
+            toSparse();
+    }
+
+    private void toSparse(){
+        if(sparse != null)
+            return;
+        SparseAmplitudes amplitudes = new SparseAmplitudes(nonzero());
+        for(int i = 0; i < real.length; i++)
+            if(!isZero(real[i], imaginary[i]))
+                amplitudes.add(i, real[i], imaginary[i]);
+        sparse = amplitudes;
+        real = null;
+        imaginary = null;
+        shared = false;
+    }
+
+    private void toDense(){
+        if(sparse == null)
+            return;
+        real = new double[1<<qubits.length];
+        imaginary = new double[real.length];
+        for(int i = 0; i < sparse.keys.length; i++)
+            if(sparse.keys[i] != SparseAmplitudes.EMPTY){
+                real[(int)sparse.keys[i]] = sparse.real[i];
+                imaginary[(int)sparse.keys[i]] = sparse.imaginary[i];
+            }
+        sparse = null;
+        shared = false;
     }
 }
\ No newline at end of file
@@ -8,6 +8,8 @@ import java.util.Collections;
 public class Qubit{
     QuantumState delegate;
     int index = 0;
+    /**the simulator that owns this qubit, or {@code null} if it was not created through one*/
+    final Simulator simulator;
 
     /**
      * Creates a qubit with the state |0&gt;
@@ -21,6 +23,16 @@ public class Qubit{
      * @param b basis state of the {@code Qubit}
      */
     public Qubit(boolean b){
+        this(null, b);
+    }
+
+    /**
+     * Creates a qubit with the basis state |0&gt; or |1&gt;, owned by a simulator
+     * @param simulator the simulator that owns the {@code Qubit}, or {@code null}
+     * @param b basis state of the {@code Qubit}
+     */
+    Qubit(Simulator simulator, boolean b){
+        this.simulator = simulator;
         delegate = new QuantumState(this,b);
     }
 
@@ -66,4 +78,17 @@ public class Qubit{
     public boolean isEntangledWith(Qubit other){
         return other.delegate == this.delegate;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gives this {@code Qubit} a new state of its own, in a basis state. The state that it was in is left as it is, so this must be
+     * done to all of the qubits of that state at once, as {@link Simulator#reset()} does.
+     * @param b basis state of the {@code Qubit}
+     */
+    void reset(boolean b){
+        QuantumState old = delegate;
+        synchronized(old){
+            delegate = new QuantumState(this,b);
+            index = 0;
+        }
+    }
+}
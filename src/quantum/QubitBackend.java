@@ -0,0 +1,48 @@
+package quantum;
+
+import java.util.BitSet;
+
+/**
+ * The {@code Backend} that operates on the qubits themselves, through the {@code QuantumState} that each of them belongs to.
+ */
+class QubitBackend implements Backend {
+    @Override
+    public void apply(QuantumGate gate, Qubit... operands){
+        gate.apply(operands);
+    }
+
+    @Override
+    public boolean measure(Qubit qubit){
+        return qubit.measure();
+    }
+
+    @Override
+    public int measure(QubitRegister qr){
+        return qr.measure();
+    }
+
+    @Override
+    public int[] sample(QubitRegister qr, int shots){
+        return qr.sample(shots);
+    }
+
+    @Override
+    public long measureLong(QubitRegister qr){
+        return qr.measureLong();
+    }
+
+    @Override
+    public BitSet measureBits(QubitRegister qr){
+        return qr.measureBits();
+    }
+
+    @Override
+    public long[] sampleLong(QubitRegister qr, int shots){
+        return qr.sampleLong(shots);
+    }
+
+    @Override
+    public BitSet[] sampleBits(QubitRegister qr, int shots){
+        return qr.sampleBits(shots);
+    }
+}
@@ -1,14 +1,20 @@
 package quantum;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.IntPredicate;
 
 import static quantum.BitUtils.*;
 
 /**
- * The {@code QubitRegister} class represents a set of Qubits that can be operated on as a group.
+ * The {@code QubitRegister} class represents a set of Qubits that can be operated on as a group. Its basis states are given as an
+ * {@code int} for registers of up to 32 qubits, as a {@code long} for up to 64 qubits, and as a {@code BitSet} for any amount.
  */
 public class QubitRegister{
 
@@ -30,33 +36,145 @@ public class QubitRegister{
      * @param value basis state value to be stored in the bits of the register
      * @param length amount of qubits to be in the register
      */
-    public QubitRegister(int length, int value){
+    public QubitRegister(int length, long value){
         qubits = new Qubit[length];
         for(int x = 0; x < length; x++)
             qubits[x] = new Qubit(BitUtils.bit(value,x));
     }
 
+    /**
+     * Creates a register of existing qubits.
+     * @param qubits the qubits to be in the register
+     */
+    QubitRegister(Qubit[] qubits){
+        this.qubits = qubits;
+    }
+
     /**
      * Performs a measurement on all of the qubits in this register. This collapses their states into a basis.
      * @return the state that the register collapses into
+     * @throws IllegalStateException if this register has more than 32 qubits, in which case nothing is measured
      */
     public int measure(){
-        Map<Qubit,Boolean> pairs = new HashMap<>(qubits.length);
-        delegates().forEach(qs->pairs.putAll(qs.sample(qubits)));
-
+        checkWidth(Integer.SIZE);
+        Map<Qubit,Boolean> pairs = measurePairs();
         return buildInt(x->pairs.get(qubits[x]),qubits.length);
     }
 
+    /**
+     * Performs a measurement on all of the qubits in this register, as {@link #measure()} does, for registers of up to 64 qubits.
+     * @return the state that the register collapses into
+     * @throws IllegalStateException if this register has more than 64 qubits, in which case nothing is measured
+     */
+    public long measureLong(){
+        checkWidth(Long.SIZE);
+        Map<Qubit,Boolean> pairs = measurePairs();
+        return buildLong(x->pairs.get(qubits[x]),qubits.length);
+    }
+
+    /**
+     * Performs a measurement on all of the qubits in this register, as {@link #measure()} does, for registers of any size.
+     * @return the state that the register collapses into, in which bit n is the basis of the nth qubit
+     */
+    public BitSet measureBits(){
+        Map<Qubit,Boolean> pairs = measurePairs();
+        return buildBits(x->pairs.get(qubits[x]),qubits.length);
+    }
+
+    private Map<Qubit,Boolean> measurePairs(){
+        Map<Qubit,Boolean> pairs = new HashMap<>(qubits.length);
+        delegates().forEach(qs->pairs.putAll(qs.measure(qubits)));
+        return pairs;
+    }
+
     /**
      * Randomly chooses a state based on the their respective probabilities. This is the equivalent of performing a
      * measurement, but without the collapse to a basis state, allowing for the repeated sampling of values without destroying the state.
      * @return a random possible basis, weighted according to the state
+     * @throws IllegalStateException if this register has more than 32 qubits
      */
     public int sample(){
+        checkWidth(Integer.SIZE);
+        Map<Qubit,Boolean> pairs = samplePairs();
+        return buildInt(x->pairs.get(qubits[x]),qubits.length);
+    }
+
+    /**
+     * Randomly chooses a state without collapse, as {@link #sample()} does, for registers of up to 64 qubits.
+     * @return a random possible basis, weighted according to the state
+     * @throws IllegalStateException if this register has more than 64 qubits
+     */
+    public long sampleLong(){
+        checkWidth(Long.SIZE);
+        Map<Qubit,Boolean> pairs = samplePairs();
+        return buildLong(x->pairs.get(qubits[x]),qubits.length);
+    }
+
+    /**
+     * Randomly chooses a state without collapse, as {@link #sample()} does, for registers of any size.
+     * @return a random possible basis, in which bit n is the basis of the nth qubit
+     */
+    public BitSet sampleBits(){
+        Map<Qubit,Boolean> pairs = samplePairs();
+        return buildBits(x->pairs.get(qubits[x]),qubits.length);
+    }
+
+    private Map<Qubit,Boolean> samplePairs(){
         Map<Qubit,Boolean> pairs = new HashMap<>(qubits.length);
-        delegates().forEach(qs->pairs.putAll(qs.measure(qubits)));
+        delegates().forEach(qs->pairs.putAll(qs.sample(qubits)));
+        return pairs;
+    }
 
-        return buildInt(x->pairs.get(qubits[x]),qubits.length);
+    /**
+     * Randomly chooses many states at once, without collapse. This is the equivalent of calling {@link #sample()} {@code shots} times,
+     * but the probabilities of the state are only gathered once, so that each additional sample costs very little.
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states, each chosen independently and weighted according to the state
+     * @throws IllegalStateException if this register has more than 32 qubits
+     */
+    public int[] sample(int shots){
+        checkWidth(Integer.SIZE);
+        return narrow(sampleLong(shots));
+    }
+
+    /**
+     * Randomly chooses many states at once, without collapse, as {@link #sample(int)} does, for registers of up to 64 qubits.
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states, each chosen independently and weighted according to the state
+     * @throws IllegalStateException if this register has more than 64 qubits
+     */
+    public long[] sampleLong(int shots){
+        checkWidth(Long.SIZE);
+        long[] result = new long[shots];
+        for(QuantumState qs : delegates()){
+            long[] states = qs.sample(shots);
+            for(int x = 0; x < qubits.length; x++)
+                if(qubits[x].delegate == qs)
+                    for(int shot = 0; shot < shots; shot++)
+                        if((states[shot] >>> qubits[x].index & 1) != 0)
+                            result[shot] |= 1L<<x;
+        }
+        return result;
+    }
+
+    /**
+     * Randomly chooses many states at once, without collapse, as {@link #sample(int)} does, for registers of any size.
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states, in which bit n is the basis of the nth qubit
+     */
+    public BitSet[] sampleBits(int shots){
+        BitSet[] result = new BitSet[shots];
+        for(int shot = 0; shot < shots; shot++)
+            result[shot] = new BitSet(qubits.length);
+        for(QuantumState qs : delegates()){
+            long[] states = qs.sample(shots);
+            for(int x = 0; x < qubits.length; x++)
+                if(qubits[x].delegate == qs)
+                    for(int shot = 0; shot < shots; shot++)
+                        if((states[shot] >>> qubits[x].index & 1) != 0)
+                            result[shot].set(x);
+        }
+        return result;
     }
 
     /**
@@ -66,7 +184,7 @@ public class QubitRegister{
      */
     public String toString(){
         StringBuilder total = new StringBuilder();
-        for(int state = 0; state < (1<<qubits.length); state++){
+        for(long state = 0; state < (1L<<qubits.length); state++){
             double probability = probabilityOf(state);
             if(probability > Complex.DELTA)
                 total.append(String.format("%.3f",probability)).append("|").append(BitUtils.toString(toBooleanArray(state, qubits.length))).append("⟩\n");
@@ -82,10 +200,24 @@ public class QubitRegister{
      * @param state the basis state to be tested for
      * @return the probability of the basis state being the measured value
      */
-    public double probabilityOf(int state){
+    public double probabilityOf(long state){
+        return probabilityOf(x->bit(state,x));
+    }
+
+    /**
+     * Finds the probability that when measured or sampled, this {@code QubitRegister} will represent a given basis state, as
+     * {@link #probabilityOf(long)} does, for registers of any size.
+     * @param state the basis state to be tested for, in which bit n is the basis of the nth qubit
+     * @return the probability of the basis state being the measured value
+     */
+    public double probabilityOf(BitSet state){
+        return probabilityOf(state::get);
+    }
+
+    private double probabilityOf(IntPredicate state){
         Map<Qubit,Boolean> s = new HashMap<>();
         for(int x = 0; x < qubits.length; x++)
-            s.put(qubits[x],bit(state,x));
+            s.put(qubits[x],state.test(x));
 
         double probability = 1;
         for(QuantumState qs : delegates())
@@ -93,6 +225,55 @@ public class QubitRegister{
         return probability;
     }
 
+    /**
+     * Saves the state of this register to a file, so that it can be loaded again without repeating the circuit that prepared it. The
+     * state is saved as it is stored, so that the qubits that are not entangled stay apart, and a sparse state takes little space.
+     * @param file the file to be written, which is replaced if it exists
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if this register is entangled with a {@code Qubit} outside of it
+     */
+    public void save(Path file) throws IOException{
+        Snapshot.save(this, file);
+    }
+
+    /**
+     * Creates a register of new qubits in the state that was saved by {@link #save(Path)}. Each call creates new qubits, so one saved
+     * state can be loaded any amount of times, and each copy measured on its own.
+     * @param file the file to be read
+     * @return the new register
+     * @throws IOException if the file cannot be read, or does not hold a saved state
+     */
+    public static QubitRegister load(Path file) throws IOException{
+        return Snapshot.load(file, Qubit::new);
+    }
+
+    /**
+     * Creates a register of new qubits in the same state as this one, as if the circuit that prepared this register had also been
+     * run on them. The two registers share the coefficients of each group of entangled qubits until one of them changes that group,
+     * at which point only that group is copied, so that many variants of one prepared state can be tried for the cost of the groups
+     * that each of them touches. If this register was created through a {@code Simulator}, so are the new qubits.
+     * @return the new register
+     * @throws IllegalArgumentException if this register is entangled with a {@code Qubit} outside of it
+     */
+    public QubitRegister fork(){
+        Map<Qubit,Integer> positions = new HashMap<>();
+        for(int x = 0; x < qubits.length; x++)
+            if(positions.putIfAbsent(qubits[x], x) != null)
+                throw new IllegalArgumentException("A register with a repeated qubit cannot be forked");
+        Set<QuantumState> states = delegates();
+        for(QuantumState qs : states)
+            if(!qs.isWithin(positions.keySet()))
+                throw new IllegalArgumentException("A register that is entangled with qubits outside of it cannot be forked");
+
+        Simulator simulator = Simulator.of(Arrays.asList(qubits));
+        Qubit[] created = new Qubit[qubits.length];
+        for(int x = 0; x < created.length; x++)
+            created[x] = simulator == null ? new Qubit() : simulator.qubit();
+        for(QuantumState qs : states)
+            qs.fork(positions, created);
+        return new QubitRegister(created);
+    }
+
     /**
      * Tests entanglement with a {@code Qubit}
      * @param other the {@code Qubit} to be tested for entanglement with this {@code QubitRegister}
@@ -103,11 +284,22 @@ public class QubitRegister{
     }
 
     /**
-     * Creates a {@code Set} of all of the {@code QuantumStates} used by the qubits of this {@code QubitRegister}
+     * Checks that the basis states of this register fit in a value of a given amount of bits, before anything is measured.
+     * @param bits the amount of bits of the value, such as {@link Integer#SIZE}
+     * @throws IllegalStateException if this register has more qubits than that
+     */
+    void checkWidth(int bits){
+        if(qubits.length > bits)
+            throw new IllegalStateException("A register of " + qubits.length + " qubits does not fit in " + bits + " bits");
+    }
+
+    /**
+     * Creates a {@code Set} of all of the {@code QuantumStates} used by the qubits of this {@code QubitRegister}. The states are in
+     * the order of the qubits, so that they draw from the {@code RandomSource} in the same order on every run.
      * @return a set of all delegates in this {@code QubitRegister}
      */
     Set<QuantumState> delegates(){
-        Set<QuantumState> quantumStates = new HashSet<>();
+        Set<QuantumState> quantumStates = new LinkedHashSet<>();
         for(Qubit q : qubits)
             quantumStates.add(q.delegate);
         return quantumStates;
@@ -0,0 +1,42 @@
+package quantum;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The {@code RandomSource} interface supplies the random numbers that decide the outcome of every measurement and sample. The source in
+ * use is chosen through {@link Configuration#setRandomSource(RandomSource)}, so that a run can be repeated exactly by giving it a seed:
+ * <pre>{@code
+ * Configuration.setRandomSource(RandomSource.seeded(42));
+ * int result = register.measure(); //the same on every run
+ * }</pre>
+ * Sources may be used by many threads at once.
+ */
+public interface RandomSource {
+    /**the default source, which draws from the {@code ThreadLocalRandom} of the calling thread and cannot be seeded*/
+    RandomSource THREAD_LOCAL = () -> ThreadLocalRandom.current().nextDouble();
+
+    /**
+     * Creates a source that repeats the same numbers for the same seed. Every call draws from one {@code SplittableRandom} in turn,
+     * so a run that makes the same calls in the same order is repeated exactly, whichever threads make them. Threads that draw at
+     * the same time wait on each other.
+     * @param seed the seed of the source
+     * @return the seeded source
+     */
+    static RandomSource seeded(long seed){
+        return new SplittableSource(seed);
+    }
+
+    /**
+     * @return a random number, uniformly distributed on [0,1)
+     */
+    double nextDouble();
+
+    /**
+     * Fills an array with random numbers, uniformly distributed on [0,1). Sources can override this to draw the whole batch at once.
+     * @param values the array to be filled
+     */
+    default void nextDoubles(double[] values){
+        for(int x = 0; x < values.length; x++)
+            values[x] = nextDouble();
+    }
+}
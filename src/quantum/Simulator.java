@@ -0,0 +1,258 @@
+package quantum;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * The {@code Simulator} class is a self-contained simulation, which owns the qubits that are created through it, along with the
+ * {@code RandomSource} that decides their measurements and the {@code Backend} that runs its circuits. Qubits of different simulators
+ * can never be entangled, so separate simulators share no state and can run on separate threads without waiting on each other:
+ * <pre>{@code
+ * Simulator simulator = new Simulator(42);
+ * QubitRegister a = simulator.register(4);
+ * for(int shot = 0; shot < 100; shot++){
+ *     simulator.execute(circuit);
+ *     results[shot] = simulator.measure(a);
+ *     simulator.reset();
+ * }
+ * }</pre>
+ * The outcomes of a seeded simulator depend only on the order in which its qubits are measured and sampled, so a simulator that is
+ * passed between the threads of a pool is repeated exactly as long as it makes the same calls in the same order. The other settings
+ * of the {@code Configuration} do not change any outcome, so they are shared by all simulators.
+ */
+public class Simulator {
+    /**the qubits created through this simulator, in order*/
+    private final List<Qubit> qubits = new ArrayList<>();
+    /**the basis state that each qubit was created in, which {@link #reset()} returns it to*/
+    private final BitSet initial = new BitSet();
+    /**the source of the random numbers that decide the measurements of the qubits*/
+    private volatile RandomSource random;
+    /**the backend that circuits, measurements and samples are passed to*/
+    private volatile Backend backend = Backend.QUBITS;
+
+    /**
+     * Creates a simulator that draws from the {@code RandomSource} of the {@code Configuration}.
+     */
+    public Simulator(){
+        random = Configuration.getRandomSource();
+    }
+
+    /**
+     * Creates a simulator whose measurements are repeated exactly by every simulator with the same seed, given the same calls in the
+     * same order. Every measurement and sample draws from a single {@code SplittableRandom} in turn, whichever thread makes it.
+     * @param seed the seed of the random numbers of this simulator
+     */
+    public Simulator(long seed){
+        //guarded by its own lock rather than that of the simulator, which is held by reset() while it takes the locks of states
+        final SplittableRandom generator = new SplittableRandom(seed);
+        random = new RandomSource(){
+            @Override
+            public double nextDouble(){
+                synchronized(generator){
+                    return generator.nextDouble();
+                }
+            }
+
+            @Override
+            public void nextDoubles(double[] values){
+                synchronized(generator){
+                    for(int x = 0; x < values.length; x++)
+                        values[x] = generator.nextDouble();
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates a {@code Qubit} owned by this simulator, with the state |0&gt;
+     * @return the new qubit
+     */
+    public Qubit qubit(){
+        return qubit(false);
+    }
+
+    /**
+     * Creates a {@code Qubit} owned by this simulator, with the basis state |0&gt; or |1&gt;
+     * @param b basis state of the {@code Qubit}
+     * @return the new qubit
+     */
+    public synchronized Qubit qubit(boolean b){
+        Qubit q = new Qubit(this, b);
+        initial.set(qubits.size(), b);
+        qubits.add(q);
+        return q;
+    }
+
+    /**
+     * Creates a register owned by this simulator, with the |0&gt;*n basis state
+     * @param length size of the new register to be created, in Qubits
+     * @return the new register
+     */
+    public QubitRegister register(int length){
+        return register(length, 0);
+    }
+
+    /**
+     * Creates a register owned by this simulator, of a given basis state and length.
+     * @param length amount of qubits to be in the register
+     * @param value basis state value to be stored in the bits of the register
+     * @return the new register
+     */
+    public QubitRegister register(int length, long value){
+        Qubit[] created = new Qubit[length];
+        for(int x = 0; x < length; x++)
+            created[x] = qubit(BitUtils.bit(value, x));
+        return new QubitRegister(created);
+    }
+
+    /**
+     * Creates a register owned by this simulator, of new qubits in the state that was saved by {@link QubitRegister#save(Path)}.
+     * {@link #reset()} returns these qubits to |0&gt;, rather than to the saved state.
+     * @param file the file to be read
+     * @return the new register
+     * @throws IOException if the file cannot be read, or does not hold a saved state
+     */
+    public QubitRegister load(Path file) throws IOException{
+        return Snapshot.load(file, this::qubit);
+    }
+
+    /**
+     * @return the qubits owned by this simulator, in the order they were created
+     */
+    public synchronized List<Qubit> qubits(){
+        return Collections.unmodifiableList(new ArrayList<>(qubits));
+    }
+
+    /**
+     * Returns every qubit of this simulator to the basis state it was created in, undoing all gates and measurements. The qubits and
+     * registers themselves are kept, so they can be used again for the next run.
+     */
+    public synchronized void reset(){
+        for(int x = 0; x < qubits.size(); x++)
+            qubits.get(x).reset(initial.get(x));
+    }
+
+    /**
+     * @return the source of the random numbers that decide the measurements of the qubits
+     */
+    public RandomSource getRandomSource(){
+        return random;
+    }
+
+    /**
+     * Changes the source of the random numbers that decide the measurements of the qubits, and those of any {@code Backend} that is
+     * created for them.
+     * @param source the new {@code RandomSource}
+     */
+    public void setRandomSource(RandomSource source){
+        if(source == null)
+            throw new IllegalArgumentException("source must not be null");
+        random = source;
+    }
+
+    /**
+     * @return the backend that circuits, measurements and samples are passed to
+     */
+    public Backend getBackend(){
+        return backend;
+    }
+
+    /**
+     * Changes the backend that circuits, measurements and samples are passed to. This is {@link Backend#QUBITS} by default. Other
+     * backends hold their own state, which {@link #reset()} does not change.
+     * @param backend the new {@code Backend}
+     */
+    public void setBackend(Backend backend){
+        if(backend == null)
+            throw new IllegalArgumentException("backend must not be null");
+        this.backend = backend;
+    }
+
+    /**
+     * Passes all gates of a circuit to the backend, in order.
+     * @param circuit the {@code Circuit} to be run
+     */
+    public void execute(Circuit circuit){
+        circuit.execute(backend);
+    }
+
+    /**
+     * Collapses the qubits of a register through the backend.
+     * @param qr the register to be measured
+     * @return the state that the register collapses into
+     */
+    public int measure(QubitRegister qr){
+        return backend.measure(qr);
+    }
+
+    /**
+     * Randomly chooses many states of a register at once through the backend, without collapse.
+     * @param qr the register to be sampled
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states of the register, each chosen independently
+     */
+    public int[] sample(QubitRegister qr, int shots){
+        return backend.sample(qr, shots);
+    }
+
+    /**
+     * Collapses the qubits of a register of up to 64 qubits through the backend.
+     * @param qr the register to be measured
+     * @return the state that the register collapses into
+     */
+    public long measureLong(QubitRegister qr){
+        return backend.measureLong(qr);
+    }
+
+    /**
+     * Collapses the qubits of a register of any size through the backend.
+     * @param qr the register to be measured
+     * @return the state that the register collapses into, in which bit n is the basis of the nth qubit
+     */
+    public BitSet measureBits(QubitRegister qr){
+        return backend.measureBits(qr);
+    }
+
+    /**
+     * Randomly chooses many states of a register of up to 64 qubits at once through the backend, without collapse.
+     * @param qr the register to be sampled
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states of the register, each chosen independently
+     */
+    public long[] sampleLong(QubitRegister qr, int shots){
+        return backend.sampleLong(qr, shots);
+    }
+
+    /**
+     * Randomly chooses many states of a register of any size at once through the backend, without collapse.
+     * @param qr the register to be sampled
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states of the register, in which bit n is the basis of the nth qubit
+     */
+    public BitSet[] sampleBits(QubitRegister qr, int shots){
+        return backend.sampleBits(qr, shots);
+    }
+
+    /**
+     * Finds the simulator that a set of qubits belongs to, which must be the same for all of them.
+     * @param qubits the qubits of a backend
+     * @return the simulator of the qubits, or {@code null} if they were not created through one
+     */
+    static Simulator of(Collection<Qubit> qubits){
+        Iterator<Qubit> iterator = qubits.iterator();
+        Simulator simulator = iterator.hasNext() ? iterator.next().simulator : null;
+        while(iterator.hasNext())
+            if(iterator.next().simulator != simulator)
+                throw new IllegalArgumentException("Qubits belong to different simulators");
+        return simulator;
+    }
+
+    /**
+     * @param simulator a simulator, or {@code null}
+     * @return the source of random numbers of the simulator, or that of the {@code Configuration} if there is none
+     */
+    static RandomSource random(Simulator simulator){
+        return simulator == null ? Configuration.getRandomSource() : simulator.random;
+    }
+}
@@ -0,0 +1,252 @@
+package quantum;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * The {@code Snapshot} class saves the state of a register to a file, and creates new qubits in that state from it. The file holds
+ * each {@code QuantumState} of the register as it is stored, so that a state that is sparse is saved as only its nonzero coefficients,
+ * and the qubits that are not entangled are kept apart when it is loaded. All values are little-endian:
+ * <pre>
+ * int magic, int version, int qubits, int states
+ * for each state:
+ *     int q, then the position in the register of each of its q qubits, in the order of their bits
+ *     byte form, 0 for dense or 1 for sparse
+ *     dense:  2<sup>q</sup> doubles of real parts, then 2<sup>q</sup> doubles of imaginary parts
+ *     sparse: int n, then n long basis states, n doubles of real parts and n doubles of imaginary parts
+ * </pre>
+ * Files are written through a direct buffer of a megabyte at a time, and read through mapped windows of the file, so that the
+ * coefficients are copied straight from the page cache into the arrays of the state.
+ */
+final class Snapshot {
+    /**the first bytes of every snapshot, "JQST"*/
+    private static final int MAGIC = 0x4A515354;
+    private static final int VERSION = 1;
+    /**the size of the buffer that files are written through*/
+    private static final int BUFFER = 1<<20;
+    /**the size of each mapped window that files are read through*/
+    private static final int WINDOW = 1<<26;
+
+    private Snapshot(){}
+
+    /**
+     * Saves the state of a register to a file, which is replaced if it exists.
+     * @param qr the register, which must not be entangled with any qubit outside of it
+     * @param file the file to be written
+     * @throws IOException if the file cannot be written
+     */
+    static void save(QubitRegister qr, Path file) throws IOException{
+        Map<Qubit,Integer> positions = new HashMap<>();
+        for(int x = 0; x < qr.qubits.length; x++)
+            if(positions.putIfAbsent(qr.qubits[x], x) != null)
+                throw new IllegalArgumentException("A register with a repeated qubit cannot be saved");
+
+        Set<QuantumState> states = qr.delegates();
+        for(QuantumState qs : states)
+            if(!qs.isWithin(positions.keySet()))
+                throw new IllegalArgumentException("A register that is entangled with qubits outside of it cannot be saved");
+        try(Output out = new Output(file)){
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(qr.qubits.length);
+            out.putInt(states.size());
+            for(QuantumState qs : states)
+                qs.write(out, positions);
+        }
+    }
+
+    /**
+     * Creates a register of new qubits in the state that was saved to a file. The whole file is read and checked before any qubit is
+     * created, so that nothing is created from a file that is not a valid snapshot.
+     * @param file the file to be read
+     * @param factory creates each of the new qubits
+     * @return the new register
+     * @throws IOException if the file cannot be read, or is not a valid snapshot
+     */
+    static QubitRegister load(Path file, Supplier<Qubit> factory) throws IOException{
+        try(Input in = new Input(file)){
+            if(in.getInt() != MAGIC || in.getInt() != VERSION)
+                throw new IOException("Not a snapshot of a register: " + file);
+            //every qubit takes at least the bytes of its position
+            int length = in.getInt();
+            int count = in.getInt();
+            if(length < 0 || length > in.remaining() / Integer.BYTES || count < 0 || count > length)
+                throw new IOException("Invalid header in snapshot: " + file);
+
+            boolean[] placed = new boolean[length];
+            int[][] positions = new int[count][];
+            QuantumState[] states = new QuantumState[count];
+            int total = 0;
+            for(int x = 0; x < count; x++){
+                int q = in.getInt();
+                if(q < 1 || q > QuantumState.MAX_SPARSE || q > length - total)
+                    throw new IOException("Invalid amount of qubits in snapshot: " + file);
+                total += q;
+                positions[x] = new int[q];
+                for(int y = 0; y < q; y++){
+                    int position = in.getInt();
+                    if(position < 0 || position >= length || placed[position])
+                        throw new IOException("Invalid qubit position in snapshot: " + file);
+                    placed[position] = true;
+                    positions[x][y] = position;
+                }
+                states[x] = QuantumState.read(in, q);
+            }
+            if(total != length)
+                throw new IOException("Snapshot is missing qubits: " + file);
+
+            Qubit[] qubits = new Qubit[length];
+            for(int x = 0; x < length; x++)
+                qubits[x] = factory.get();
+            for(int x = 0; x < count; x++)
+                states[x].place(positions[x], qubits);
+            return new QubitRegister(qubits);
+        }
+    }
+
+    /**
+     * Writes values to a file through a direct buffer, which is passed to the channel each time it fills up.
+     */
+    static final class Output implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+
+        private Output(Path file) throws IOException{
+            channel = FileChannel.open(file, CREATE, TRUNCATE_EXISTING, WRITE);
+        }
+
+        void putByte(byte value) throws IOException{
+            reserve(Byte.BYTES);
+            buffer.put(value);
+        }
+
+        void putInt(int value) throws IOException{
+            reserve(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLongs(long[] values, int length) throws IOException{
+            for(int x = 0; x < length;){
+                reserve(Long.BYTES);
+                int count = Math.min(length - x, buffer.remaining()/Long.BYTES);
+                buffer.asLongBuffer().put(values, x, count);
+                buffer.position(buffer.position() + count*Long.BYTES);
+                x += count;
+            }
+        }
+
+        void putDoubles(double[] values, int length) throws IOException{
+            for(int x = 0; x < length;){
+                reserve(Double.BYTES);
+                int count = Math.min(length - x, buffer.remaining()/Double.BYTES);
+                buffer.asDoubleBuffer().put(values, x, count);
+                buffer.position(buffer.position() + count*Double.BYTES);
+                x += count;
+            }
+        }
+
+        private void reserve(int bytes) throws IOException{
+            if(buffer.remaining() < bytes)
+                flush();
+        }
+
+        private void flush() throws IOException{
+            buffer.flip();
+            while(buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException{
+            try{
+                flush();
+            }
+            finally{
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads values from a file through windows of it that are mapped into memory one after another.
+     */
+    static final class Input implements Closeable {
+        private final FileChannel channel;
+        private final long size;
+        /**the position in the file of the start of the current window*/
+        private long start;
+        private ByteBuffer window = ByteBuffer.allocate(0);
+
+        private Input(Path file) throws IOException{
+            channel = FileChannel.open(file, READ);
+            size = channel.size();
+        }
+
+        /**
+         * @return the amount of bytes of the file that have not been read
+         */
+        long remaining(){
+            return size - start - window.position();
+        }
+
+        byte getByte() throws IOException{
+            require(Byte.BYTES);
+            return window.get();
+        }
+
+        int getInt() throws IOException{
+            require(Integer.BYTES);
+            return window.getInt();
+        }
+
+        void getLongs(long[] values) throws IOException{
+            for(int x = 0; x < values.length;){
+                require(Long.BYTES);
+                int count = Math.min(values.length - x, window.remaining()/Long.BYTES);
+                window.asLongBuffer().get(values, x, count);
+                window.position(window.position() + count*Long.BYTES);
+                x += count;
+            }
+        }
+
+        void getDoubles(double[] values) throws IOException{
+            for(int x = 0; x < values.length;){
+                require(Double.BYTES);
+                int count = Math.min(values.length - x, window.remaining()/Double.BYTES);
+                window.asDoubleBuffer().get(values, x, count);
+                window.position(window.position() + count*Double.BYTES);
+                x += count;
+            }
+        }
+
+        /**
+         * Maps the next window of the file if fewer than a given amount of bytes are left in the current one.
+         */
+        private void require(int bytes) throws IOException{
+            if(window.remaining() >= bytes)
+                return;
+            start += window.position();
+            long length = Math.min(WINDOW, size - start);
+            if(length < bytes)
+                throw new EOFException("Snapshot ends early");
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        @Override
+        public void close() throws IOException{
+            channel.close();
+        }
+    }
+}
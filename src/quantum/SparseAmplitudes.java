@@ -0,0 +1,101 @@
+package quantum;
+
+import java.util.Arrays;
+
+/**
+ * The {@code SparseAmplitudes} class stores only the coefficients of a {@code QuantumState} that are not zero, in an open-addressing
+ * hash table from basis state to complex coefficient. Basis states are {@code long}s, so that a sparse state may hold more qubits
+ * than a dense one. The table is iterated by walking its slots, and skipping those whose key is {@link #EMPTY}.
+ */
+final class SparseAmplitudes {
+    /**the key of a slot that holds no coefficient*/
+    static final long EMPTY = -1;
+
+    /**the basis state held in each slot, or {@link #EMPTY}*/
+    long[] keys;
+    /**the real part of the coefficient in each slot*/
+    double[] real;
+    /**the imaginary part of the coefficient in each slot*/
+    double[] imaginary;
+    /**the amount of slots that are not empty*/
+    int size;
+
+    /**
+     * Creates an empty table.
+     * @param expected the amount of coefficients that the table should hold without growing
+     */
+    SparseAmplitudes(int expected){
+        int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+        keys = new long[capacity];
+        real = new double[capacity];
+        imaginary = new double[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Finds the slot of a basis state.
+     * @param key a basis state
+     * @return the slot that holds the basis state, or the empty slot where it would be inserted
+     */
+    private int slot(long key){
+        int mask = keys.length - 1;
+        int i = (int)((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while(keys[i] != EMPTY && keys[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    /**
+     * @param key a basis state
+     * @return the slot that holds the basis state, or -1 if its coefficient is zero
+     */
+    int find(long key){
+        int i = slot(key);
+        return keys[i] == EMPTY ? -1 : i;
+    }
+
+    /**
+     * Adds to the coefficient of a basis state.
+     * @param key the basis state
+     * @param re the real part to be added
+     * @param im the imaginary part to be added
+     */
+    void add(long key, double re, double im){
+        int i = slot(key);
+        if(keys[i] == EMPTY){
+            if((size + 1) * 2 > keys.length){
+                grow();
+                i = slot(key);
+            }
+            keys[i] = key;
+            size++;
+        }
+        real[i] += re;
+        imaginary[i] += im;
+    }
+
+    private void grow(){
+        long[] oldKeys = keys;
+        double[] oldReal = real;
+        double[] oldImaginary = imaginary;
+        keys = new long[oldKeys.length * 2];
+        real = new double[keys.length];
+        imaginary = new double[keys.length];
+        Arrays.fill(keys, EMPTY);
+        for(int x = 0; x < oldKeys.length; x++)
+            if(oldKeys[x] != EMPTY){
+                int i = slot(oldKeys[x]);
+                keys[i] = oldKeys[x];
+                real[i] = oldReal[x];
+                imaginary[i] = oldImaginary[x];
+            }
+    }
+
+    /**
+     * @param i a slot that is not empty
+     * @return the absolute square of the coefficient in the slot
+     */
+    double absoluteSquare(int i){
+        return real[i]*real[i] + imaginary[i]*imaginary[i];
+    }
+}
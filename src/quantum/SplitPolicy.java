@@ -0,0 +1,15 @@
+package quantum;
+
+/**
+ * The {@code SplitPolicy} determines when a {@code QuantumState} looks for qubits that are no longer entangled with the rest of it,
+ * and splits them into separate states. Splitting keeps states small, but the search for qubits to split scans the whole state,
+ * which can cost more than the gates themselves in deep circuits.
+ */
+public enum SplitPolicy {
+    /** states are never searched for splits. Measured qubits are still given a state of their own, as that requires no search */
+    NEVER,
+    /** states are searched for splits only after a measurement */
+    ON_MEASURE,
+    /** the qubits are searched for splits after every measurement and every gate of more than one {@code Qubit} */
+    EAGER
+}
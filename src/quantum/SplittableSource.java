@@ -0,0 +1,28 @@
+package quantum;
+
+import java.util.SplittableRandom;
+
+/**
+ * The {@code SplittableSource} class is a seeded {@code RandomSource}, which draws every number from a single {@code SplittableRandom}.
+ * Calls are synchronized, so the numbers that each call receives depend only on the order of the calls, and not on the threads that
+ * make them. Engines that draw from many threads at once, such as {@code Trajectories}, split streams of their own instead.
+ */
+final class SplittableSource implements RandomSource {
+    /**the stream that every call draws from in turn*/
+    private final SplittableRandom random;
+
+    SplittableSource(long seed){
+        random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public synchronized double nextDouble(){
+        return random.nextDouble();
+    }
+
+    @Override
+    public synchronized void nextDoubles(double[] values){
+        for(int x = 0; x < values.length; x++)
+            values[x] = random.nextDouble();
+    }
+}
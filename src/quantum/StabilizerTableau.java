@@ -0,0 +1,315 @@
+package quantum;
+
+import java.util.*;
+
+/**
+ * The {@code StabilizerTableau} class is a {@code Backend} that simulates circuits made only of Clifford gates, such as
+ * {@link QuantumGate#H}, {@link QuantumGate#X}, {@link QuantumGate#Y}, {@link QuantumGate#Z}, {@link QuantumGate#S},
+ * {@link QuantumGate#CNOT}, {@link QuantumGate#SQRT_NOT} and R(2). Instead of one coefficient per basis state, it stores the
+ * 2n Pauli operators that stabilize and destabilize the state, following Aaronson and Gottesman, so that gates take time linear in the
+ * amount of qubits and measurements take quadratic time. This allows circuits on thousands of qubits to be simulated.
+ *
+ * <p>
+ *     The tableau begins in the basis state that its qubits are in when it is created, and does not change the qubits themselves:
+ * </p>
+ * <pre>{@code
+ * if(circuit.isClifford()){
+ *     StabilizerTableau tableau = new StabilizerTableau(circuit.qubits());
+ *     circuit.execute(tableau);
+ *     int result = tableau.measure(register);
+ * }
+ * }</pre>
+ */
+public class StabilizerTableau implements Backend {
+    /**the column of the tableau that belongs to each qubit*/
+    private final Map<Qubit,Integer> columns;
+    /**the amount of qubits*/
+    private final int n;
+    /**the amount of {@code long} words in each row*/
+    private final int words;
+    /**the X bits of each row: n destabilizers, then n stabilizers, then a row used while measuring*/
+    private final long[][] x;
+    /**the Z bits of each row, in the same order as {@link #x}*/
+    private final long[][] z;
+    /**the sign of each row, where 1 is negative*/
+    private final int[] r;
+    /**the simulator that owns the qubits, whose random source decides measurements, or {@code null}*/
+    private final Simulator simulator;
+
+    /**
+     * Creates a tableau for a set of qubits, starting in the basis state that they are in.
+     * @param qubits the qubits that gates will be applied to, each of which must be in |0&gt; or |1&gt;
+     */
+    public StabilizerTableau(Collection<Qubit> qubits){
+        simulator = Simulator.of(qubits);
+        columns = new HashMap<>();
+        for(Qubit q : qubits)
+            columns.putIfAbsent(q, columns.size());
+
+        n = columns.size();
+        words = (n + Long.SIZE - 1) / Long.SIZE;
+        x = new long[2*n+1][words];
+        z = new long[2*n+1][words];
+        r = new int[2*n+1];
+        for(int i = 0; i < n; i++){
+            x[i][i/Long.SIZE] = 1L<<i;
+            z[i+n][i/Long.SIZE] = 1L<<i;
+        }
+
+        for(Map.Entry<Qubit,Integer> entry : columns.entrySet()){
+            double p = entry.getKey().probabilityOf(true);
+            if(Math.abs(p - 1) < 1e-9){
+                hadamard(entry.getValue());
+                phase(entry.getValue());
+                phase(entry.getValue());
+                hadamard(entry.getValue());
+            }
+            else if(p > 1e-9)
+                throw new IllegalArgumentException("Qubits must be in a basis state");
+        }
+    }
+
+    /**
+     * Creates a tableau for a set of qubits, starting in the basis state that they are in.
+     * @param qubits the qubits that gates will be applied to, each of which must be in |0&gt; or |1&gt;
+     */
+    public StabilizerTableau(Qubit... qubits){
+        this(Arrays.asList(qubits));
+    }
+
+    private StabilizerTableau(StabilizerTableau other){
+        simulator = other.simulator;
+        columns = other.columns;
+        n = other.n;
+        words = other.words;
+        x = new long[other.x.length][];
+        z = new long[other.z.length][];
+        for(int i = 0; i < x.length; i++){
+            x[i] = other.x[i].clone();
+            z[i] = other.z[i].clone();
+        }
+        r = other.r.clone();
+    }
+
+    /**
+     * Applies a Clifford gate to a set of qubits.
+     * @param gate the gate to be applied, which must be a Clifford gate on one or two qubits
+     * @param operands the operand qubits, of the same amount as the size of the gate
+     */
+    @Override
+    public synchronized void apply(QuantumGate gate, Qubit... operands){
+        int[][] word = Clifford.decompose(gate);
+        if(word == null)
+            throw new IllegalArgumentException("Not a Clifford gate");
+        if(operands.length != gate.size)
+            throw new IllegalArgumentException("Invalid number of operands");
+
+        int[] indices = new int[operands.length];
+        for(int i = 0; i < operands.length; i++)
+            indices[i] = column(operands[i]);
+
+        for(int[] operation : word){
+            switch(operation[0]){
+                case Clifford.H:
+                    hadamard(indices[operation[1]]);
+                    break;
+                case Clifford.PHASE:
+                    phase(indices[operation[1]]);
+                    break;
+                default:
+                    cnot(indices[operation[1]], indices[operation[2]]);
+            }
+        }
+    }
+
+    /**
+     * @param gate a gate that could be applied
+     * @return whether the gate is a Clifford gate on one or two qubits
+     */
+    @Override
+    public boolean supports(QuantumGate gate){
+        return Clifford.isClifford(gate);
+    }
+
+    /**
+     * Collapses a {@code Qubit} to either |0&gt; or |1&gt;, within this tableau
+     * @param qubit the {@code Qubit} to be measured
+     * @return the result of this collapse
+     */
+    @Override
+    public synchronized boolean measure(Qubit qubit){
+        return measure(column(qubit));
+    }
+
+    /**
+     * Randomly chooses many states of a register at once, without collapse. Each sample is taken by measuring a copy of this tableau.
+     * @param qr the register to be sampled
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states of the register, each chosen independently
+     */
+    @Override
+    public synchronized int[] sample(QubitRegister qr, int shots){
+        qr.checkWidth(Integer.SIZE);
+        return BitUtils.narrow(sampleLong(qr, shots));
+    }
+
+    /**
+     * Randomly chooses many states of a register of up to 64 qubits at once, without collapse, as {@link #sample(QubitRegister, int)} does.
+     * @param qr the register to be sampled
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states of the register, each chosen independently
+     */
+    @Override
+    public synchronized long[] sampleLong(QubitRegister qr, int shots){
+        qr.checkWidth(Long.SIZE);
+        BitSet[] states = sampleBits(qr, shots);
+        long[] result = new long[shots];
+        for(int shot = 0; shot < shots; shot++)
+            result[shot] = BitUtils.toLong(states[shot]);
+        return result;
+    }
+
+    /**
+     * Randomly chooses many states of a register of any size at once, without collapse, as {@link #sample(QubitRegister, int)} does.
+     * @param qr the register to be sampled
+     * @param shots the amount of samples to be taken
+     * @return an array of {@code shots} possible basis states of the register, in which bit n is the basis of the nth qubit
+     */
+    @Override
+    public synchronized BitSet[] sampleBits(QubitRegister qr, int shots){
+        int[] indices = new int[qr.qubits.length];
+        for(int i = 0; i < indices.length; i++)
+            indices[i] = column(qr.qubits[i]);
+
+        BitSet[] result = new BitSet[shots];
+        for(int shot = 0; shot < shots; shot++){
+            result[shot] = new BitSet(indices.length);
+            StabilizerTableau copy = new StabilizerTableau(this);
+            for(int i = 0; i < indices.length; i++)
+                if(copy.measure(indices[i]))
+                    result[shot].set(i);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the probability of a given basis state of a {@code Qubit} if it were to collapse. For a stabilizer state this is always
+     * 0, 1/2 or 1.
+     * @param qubit the {@code Qubit} to be tested
+     * @param state basis to test for the probability of
+     * @return the probability of this basis state occurring.
+     */
+    public synchronized double probabilityOf(Qubit qubit, boolean state){
+        int a = column(qubit);
+        for(int i = n; i < 2*n; i++)
+            if(bit(x[i], a))
+                return 0.5;
+        return (determinate(a) == 1) == state ? 1 : 0;
+    }
+
+    private int column(Qubit qubit){
+        Integer column = columns.get(qubit);
+        if(column == null)
+            throw new IllegalArgumentException("Qubit is not part of this tableau");
+        return column;
+    }
+
+    private static boolean bit(long[] row, int a){
+        return (row[a/Long.SIZE] >>> a & 1) != 0;
+    }
+
+    private void hadamard(int a){
+        int w = a/Long.SIZE;
+        long m = 1L<<a;
+        for(int i = 0; i < 2*n; i++){
+            long xa = x[i][w] & m;
+            long za = z[i][w] & m;
+            if((xa & za) != 0)
+                r[i] ^= 1;
+            x[i][w] ^= xa ^ za;
+            z[i][w] ^= xa ^ za;
+        }
+    }
+
+    private void phase(int a){
+        int w = a/Long.SIZE;
+        long m = 1L<<a;
+        for(int i = 0; i < 2*n; i++){
+            long xa = x[i][w] & m;
+            if((xa & z[i][w]) != 0)
+                r[i] ^= 1;
+            z[i][w] ^= xa;
+        }
+    }
+
+    private void cnot(int control, int target){
+        int cw = control/Long.SIZE;
+        int tw = target/Long.SIZE;
+        for(int i = 0; i < 2*n; i++){
+            boolean xc = bit(x[i], control);
+            boolean zc = bit(z[i], control);
+            boolean xt = bit(x[i], target);
+            boolean zt = bit(z[i], target);
+            if(xc && zt && (xt == zc))
+                r[i] ^= 1;
+            if(xc)
+                x[i][tw] ^= 1L<<target;
+            if(zt)
+                z[i][cw] ^= 1L<<control;
+        }
+    }
+
+    /**
+     * Multiplies the Pauli operator of row {@code h} by that of row {@code i}, keeping track of the sign.
+     */
+    private void rowsum(int h, int i){
+        int sum = 2*r[h] + 2*r[i];
+        for(int w = 0; w < words; w++){
+            long x1 = x[i][w], z1 = z[i][w], x2 = x[h][w], z2 = z[h][w];
+            long y = x1 & z1, xOnly = x1 & ~z1, zOnly = ~x1 & z1;
+            long plus = (y & z2 & ~x2) | (xOnly & z2 & x2) | (zOnly & x2 & ~z2);
+            long minus = (y & x2 & ~z2) | (xOnly & z2 & ~x2) | (zOnly & x2 & z2);
+            sum += Long.bitCount(plus) - Long.bitCount(minus);
+            x[h][w] = x2 ^ x1;
+            z[h][w] = z2 ^ z1;
+        }
+        r[h] = (sum & 3) == 0 ? 0 : 1;
+    }
+
+    private boolean measure(int a){
+        int p = -1;
+        for(int i = n; i < 2*n && p < 0; i++)
+            if(bit(x[i], a))
+                p = i;
+
+        if(p < 0)
+            return determinate(a) == 1;
+
+        for(int i = 0; i < 2*n; i++)
+            if(i != p && bit(x[i], a))
+                rowsum(i, p);
+
+        System.arraycopy(x[p], 0, x[p-n], 0, words);
+        System.arraycopy(z[p], 0, z[p-n], 0, words);
+        r[p-n] = r[p];
+        Arrays.fill(x[p], 0);
+        Arrays.fill(z[p], 0);
+        z[p][a/Long.SIZE] = 1L<<a;
+        r[p] = Simulator.random(simulator).nextDouble() < 0.5 ? 0 : 1;
+        return r[p] == 1;
+    }
+
+    /**
+     * Finds the outcome of measuring a qubit whose outcome is not random, using the scratch row.
+     */
+    private int determinate(int a){
+        int scratch = 2*n;
+        Arrays.fill(x[scratch], 0);
+        Arrays.fill(z[scratch], 0);
+        r[scratch] = 0;
+        for(int i = 0; i < n; i++)
+            if(bit(x[i], a))
+                rowsum(scratch, i+n);
+        return r[scratch];
+    }
+}
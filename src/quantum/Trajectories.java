@@ -0,0 +1,336 @@
+package quantum;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * The {@code Trajectories} class simulates a noisy circuit by running it many times on a pure state, inserting errors at random, rather
+ * than keeping the density matrix. After every gate, one Kraus operator of the {@code NoiseChannel} is chosen for each operand, with the
+ * probability that it would occur, and applied in place of the whole channel. Averaged over many trajectories, this gives the same
+ * outcomes as a {@code DensityMatrix}, but each trajectory only needs 2<sup>n</sup> coefficients, and trajectories are independent of
+ * each other, so they are spread across the pool of the {@code Configuration}.
+ *
+ * <p>
+ *     The circuit starts in the basis state that its qubits are in when it is run, and does not change the qubits themselves:
+ * </p>
+ * <pre>{@code
+ * Trajectories trajectories = new Trajectories(circuit);
+ * trajectories.setNoise(NoiseChannel.amplitudeDamping(0.02));
+ * Trajectories.Result result = trajectories.run(register, 10000);
+ * double parity = result.expectation(s -> Integer.bitCount(s) % 2 == 0 ? 1 : -1);
+ * }</pre>
+ */
+public class Trajectories {
+    /**the most qubits that a trajectory can hold*/
+    private static final int MAX_QUBITS = 30;
+    /**the amount of trajectories that share a random stream*/
+    private static final int CHUNK = 16;
+
+    /**the circuit that is run by every trajectory*/
+    private final Circuit circuit;
+    /**the channel that acts on each operand after every gate, or {@code null}*/
+    private NoiseChannel noise;
+    /**the source of the random streams of each run, which are split from it, or {@code null} until the first run or seed*/
+    private SplittableRandom random;
+
+    /**
+     * Creates a trajectory simulation of a circuit. Gates added to the circuit later are also run.
+     * @param circuit the {@code Circuit} that each trajectory runs
+     */
+    public Trajectories(Circuit circuit){
+        this.circuit = circuit;
+    }
+
+    /**
+     * Chooses a channel that acts on each operand of every gate, after the gate is applied.
+     * @param channel the {@code NoiseChannel}, or {@code null} for gates without noise
+     */
+    public synchronized void setNoise(NoiseChannel channel){
+        noise = channel;
+    }
+
+    /**
+     * Makes the following runs repeatable, regardless of the {@code RandomSource} of the qubits. Each group of
+     * trajectories takes its own stream, split from this seed in a fixed order, so the outcomes do not depend on how the groups are
+     * spread across threads.
+     * @param seed the seed of the random streams
+     */
+    public synchronized void setSeed(long seed){
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Runs the circuit a number of times, and measures a register at the end of each trajectory.
+     * @param qr the register to be measured, whose qubits must be in a basis state when this is called, like those of the circuit
+     * @param trajectories the amount of times that the circuit is run
+     * @return the outcomes of the measurements, along with the probability of each outcome averaged over all trajectories
+     */
+    public synchronized Result run(QubitRegister qr, int trajectories){
+        if(trajectories <= 0)
+            throw new IllegalArgumentException("trajectories must be positive");
+
+        Map<Qubit,Integer> bits = new HashMap<>();
+        int initial = 0;
+        List<Qubit> qubits = circuit.qubits();
+        Collections.addAll(qubits, qr.qubits);
+        for(Qubit q : qubits)
+            if(bits.putIfAbsent(q, bits.size()) == null){
+                if(bits.size() > MAX_QUBITS)
+                    throw new IllegalArgumentException("Too many qubits for a trajectory");
+                double p = q.probabilityOf(true);
+                if(p > 1e-9 && Math.abs(p - 1) > 1e-9)
+                    throw new IllegalArgumentException("Qubits must be in a basis state");
+                if(p > 0.5)
+                    initial |= 1<<bits.get(q);
+            }
+
+        List<Circuit.Operation> operations = circuit.operations;
+        QuantumGate[] gates = new QuantumGate[operations.size()];
+        int[][] operands = new int[gates.length][];
+        for(int k = 0; k < gates.length; k++){
+            gates[k] = operations.get(k).gate;
+            operands[k] = new int[gates[k].size];
+            for(int x = 0; x < operands[k].length; x++)
+                operands[k][x] = bits.get(operations.get(k).operands[x]);
+        }
+        int[] positions = new int[qr.qubits.length];
+        for(int x = 0; x < positions.length; x++)
+            positions[x] = bits.get(qr.qubits[x]);
+
+        if(random == null)
+            //seeded from the source of the simulator that owns the qubits, so that a seeded simulator repeats the trajectories too
+            random = new SplittableRandom((long)(Simulator.random(Simulator.of(qubits)).nextDouble() * 0x1p53));
+        SplittableRandom[] streams = new SplittableRandom[(trajectories + CHUNK - 1) / CHUNK];
+        for(int c = 0; c < streams.length; c++)
+            streams[c] = random.split();
+
+        //each worker of the pool runs an equal range of the groups with a single state and histogram, which are merged once at the end
+        Run run = new Run(bits.size(), initial, gates, operands, positions, noise, streams, trajectories);
+        ForkJoinPool pool = Configuration.getPool();
+        int workers = Math.min(streams.length, pool.getParallelism());
+        List<ForkJoinTask<Result>> tasks = new ArrayList<>(workers);
+        for(int w = 0; w < workers; w++){
+            final int from = (int)((long)streams.length * w / workers);
+            final int to = (int)((long)streams.length * (w + 1) / workers);
+            tasks.add(pool.submit(() -> run.run(from, to)));
+        }
+        Result result = tasks.get(0).join();
+        for(int w = 1; w < workers; w++)
+            result.add(tasks.get(w).join());
+        return result;
+    }
+
+    /**
+     * The outcomes of a set of trajectories.
+     */
+    public static class Result {
+        /**the amount of trajectories that ended in each outcome*/
+        private final long[] counts;
+        /**the probability of each outcome, added up over all trajectories*/
+        private final double[] probabilities;
+        /**the amount of trajectories*/
+        private int trajectories;
+
+        private Result(int size){
+            counts = new long[1<<size];
+            probabilities = new double[1<<size];
+        }
+
+        private void add(Result other){
+            for(int s = 0; s < counts.length; s++){
+                counts[s] += other.counts[s];
+                probabilities[s] += other.probabilities[s];
+            }
+            trajectories += other.trajectories;
+        }
+
+        /**
+         * @return the amount of trajectories that were run
+         */
+        public int trajectories(){
+            return trajectories;
+        }
+
+        /**
+         * @param outcome a basis state of the register
+         * @return the amount of trajectories in which the register was measured in that basis state
+         */
+        public long count(int outcome){
+            return counts[outcome];
+        }
+
+        /**
+         * @return the amount of trajectories that ended in each basis state of the register, as a histogram
+         */
+        public long[] counts(){
+            return counts.clone();
+        }
+
+        /**
+         * Finds the probability of an outcome, averaged over all trajectories. This converges faster than the counts, as each
+         * trajectory contributes the exact probabilities of its final state rather than a single sample.
+         * @param outcome a basis state of the register
+         * @return the probability of measuring that basis state
+         */
+        public double probability(int outcome){
+            return probabilities[outcome] / trajectories;
+        }
+
+        /**
+         * Finds the expected value of an observable that is diagonal in the computational basis, such as a product of Z operators.
+         * @param observable function from a basis state of the register to the value observed in that state
+         * @return the expected value, averaged over all trajectories
+         */
+        public double expectation(IntToDoubleFunction observable){
+            double sum = 0;
+            for(int s = 0; s < probabilities.length; s++)
+                if(probabilities[s] != 0)
+                    sum += probabilities[s] * observable.applyAsDouble(s);
+            return sum / trajectories;
+        }
+    }
+
+    /**
+     * Everything that a trajectory needs, gathered once for each run.
+     */
+    private static class Run {
+        private final int n, initial;
+        private final QuantumGate[] gates;
+        private final int[][] operands;
+        private final int[] positions;
+        private final NoiseChannel noise;
+        private final SplittableRandom[] streams;
+        private final int trajectories;
+
+        Run(int n, int initial, QuantumGate[] gates, int[][] operands, int[] positions, NoiseChannel noise, SplittableRandom[] streams, int trajectories){
+            this.n = n;
+            this.initial = initial;
+            this.gates = gates;
+            this.operands = operands;
+            this.positions = positions;
+            this.noise = noise;
+            this.streams = streams;
+            this.trajectories = trajectories;
+        }
+
+        /**
+         * Runs the trajectories of a range of chunks, one after the other in the same pair of arrays and the same histogram.
+         */
+        Result run(int from, int to){
+            Result result = new Result(positions.length);
+            double[] real = new double[1<<n];
+            double[] imaginary = new double[real.length];
+            for(int c = from; c < to; c++){
+                SplittableRandom random = streams[c];
+                for(int t = c * CHUNK; t < Math.min(trajectories, (c + 1) * CHUNK); t++){
+                    Arrays.fill(real, 0);
+                    Arrays.fill(imaginary, 0);
+                    real[initial] = 1;
+                    for(int k = 0; k < gates.length; k++){
+                        QuantumState.apply(real, imaginary, gates[k].target, operands[k]);
+                        if(noise != null)
+                            for(int b : operands[k])
+                                error(real, imaginary, b, random);
+                    }
+                    measure(real, imaginary, result, random);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Applies one Kraus operator of the noise channel to a qubit, chosen with the probability that it occurs, and renormalizes.
+         */
+        private void error(double[] real, double[] imaginary, int b, SplittableRandom random){
+            double[] weights = noise.weights == null ? weights(real, imaginary, b) : noise.weights;
+            double u = random.nextDouble();
+            int k = -1;
+            for(int x = 0; x < weights.length; x++)
+                if(weights[x] > 0){
+                    k = x;
+                    if(u < weights[x])
+                        break;
+                    u -= weights[x];
+                }
+
+            double[] kr = noise.krausReal[k];
+            double[] ki = noise.krausImaginary[k];
+            //a multiple of the identity only changes the global phase once it is renormalized
+            if(kr[1] == 0 && kr[2] == 0 && ki[1] == 0 && ki[2] == 0 && kr[0] == kr[3] && ki[0] == ki[3])
+                return;
+
+            double scale = 1 / Math.sqrt(weights[k]);
+            double[] mr = new double[4];
+            double[] mi = new double[4];
+            for(int x = 0; x < 4; x++){
+                mr[x] = kr[x] * scale;
+                mi[x] = ki[x] * scale;
+            }
+            QuantumState.applySingle(real, imaginary, mr, mi, b, 0);
+        }
+
+        /**
+         * Finds the probability of each Kraus operator from the reduced density matrix of a qubit, for channels where it depends on
+         * the state.
+         */
+        private double[] weights(double[] real, double[] imaginary, int b){
+            final int stride = 1<<b;
+            double p0 = 0, p1 = 0, cr = 0, ci = 0;
+            for(int i = 0; i < real.length; i++)
+                if((i & stride) == 0){
+                    int j = i | stride;
+                    p0 += real[i]*real[i] + imaginary[i]*imaginary[i];
+                    p1 += real[j]*real[j] + imaginary[j]*imaginary[j];
+                    //the coherence ψ0 conj(ψ1)
+                    cr += real[i]*real[j] + imaginary[i]*imaginary[j];
+                    ci += imaginary[i]*real[j] - real[i]*imaginary[j];
+                }
+
+            double[] weights = new double[noise.krausReal.length];
+            for(int k = 0; k < weights.length; k++){
+                double[] kr = noise.krausReal[k];
+                double[] ki = noise.krausImaginary[k];
+                double w = 0;
+                for(int z = 0; z < 2; z++){
+                    //|K[z][0]|² p0 + |K[z][1]|² p1 + 2 Re(K[z][0] conj(K[z][1]) ψ0 conj(ψ1))
+                    double ar = kr[z*2], ai = ki[z*2], br = kr[z*2 + 1], bi = ki[z*2 + 1];
+                    double xr = ar*br + ai*bi, xi = ai*br - ar*bi;
+                    w += (ar*ar + ai*ai) * p0 + (br*br + bi*bi) * p1 + 2 * (xr*cr - xi*ci);
+                }
+                weights[k] = Math.max(0, w);
+            }
+            return weights;
+        }
+
+        /**
+         * Adds the probabilities of the outcomes of the register to a result, and measures it once.
+         */
+        private void measure(double[] real, double[] imaginary, Result result, SplittableRandom random){
+            double total = 0;
+            for(int s = 0; s < real.length; s++){
+                double p = real[s]*real[s] + imaginary[s]*imaginary[s];
+                if(p != 0){
+                    result.probabilities[outcome(s)] += p;
+                    total += p;
+                }
+            }
+
+            double u = random.nextDouble() * total;
+            int s = 0;
+            while(s < real.length - 1 && (u -= real[s]*real[s] + imaginary[s]*imaginary[s]) >= 0)
+                s++;
+            result.counts[outcome(s)]++;
+            result.trajectories++;
+        }
+
+        private int outcome(int s){
+            int outcome = 0;
+            for(int x = 0; x < positions.length; x++)
+                if((s >>> positions[x] & 1) != 0)
+                    outcome |= 1<<x;
+            return outcome;
+        }
+    }
+}
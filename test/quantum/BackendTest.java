@@ -0,0 +1,167 @@
+package quantum;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static quantum.QuantumGate.*;
+
+/**
+ * Runs small random circuits on each backend, and on plain qubits, and checks that they end in the same state.
+ */
+class BackendTest {
+    private static final double EPSILON = 1e-9;
+    private static final int CIRCUITS = 50;
+    private static final int DEPTH = 30;
+
+    private static final QuantumGate[] GATES = {H, X, Y, Z, SQRT_NOT, R(2), R(3), R(3).inverse(), new DiagonalGate(0.3, 1.1),
+            CNOT, S, SQRT_SWAP, C(H), C(R(3)), new DiagonalGate(2, x -> x * 0.7)};
+    private static final QuantumGate[] WIDE_GATES = {C(C(X)), new PermutationGate(3, x -> (x + 3) % 8), C(C(R(2)))};
+    private static final QuantumGate[] CLIFFORD_GATES = {H, X, Y, Z, R(2), R(2).inverse(), CNOT, S, C(Z)};
+
+    private int sparseThreshold;
+
+    @BeforeEach
+    void save(){
+        sparseThreshold = Configuration.getSparseThreshold();
+    }
+
+    @AfterEach
+    void restore(){
+        Configuration.setSparseThreshold(sparseThreshold);
+    }
+
+    /**
+     * Records a random circuit on a register. The same seed gives the same circuit on any register of the same width.
+     */
+    private static Circuit circuit(QubitRegister qr, long seed, QuantumGate[]... sets){
+        Random random = new Random(seed);
+        List<QuantumGate> gates = new ArrayList<>();
+        for(QuantumGate[] set : sets)
+            for(QuantumGate gate : set)
+                if(gate.size <= qr.qubits.length)
+                    gates.add(gate);
+
+        Circuit circuit = new Circuit();
+        List<Qubit> qubits = new ArrayList<>(Arrays.asList(qr.qubits));
+        for(int x = 0; x < DEPTH; x++){
+            QuantumGate gate = gates.get(random.nextInt(gates.size()));
+            Collections.shuffle(qubits, random);
+            circuit.add(gate, qubits.subList(0, gate.size).toArray(new Qubit[0]));
+        }
+        return circuit;
+    }
+
+    /**
+     * Runs random circuits on plain qubits and on a backend, and compares the probability that each qubit is |1&gt;.
+     * @param backend creates the backend for the qubits of a register
+     * @param probability finds the probability that a qubit is |1&gt; within the backend
+     */
+    private static <B extends Backend> void compare(Function<QubitRegister,B> backend, BiFunction<B,Qubit,Double> probability,
+                                                    QuantumGate[]... sets) throws Exception{
+        Random random = new Random(1);
+        for(int x = 0; x < CIRCUITS; x++){
+            int n = 1 + random.nextInt(5);
+            long value = random.nextInt(1<<n);
+            long seed = random.nextLong();
+
+            QubitRegister expected = new QubitRegister(n, value);
+            circuit(expected, seed, sets).execute();
+            QubitRegister qr = new QubitRegister(n, value);
+            B b = backend.apply(qr);
+            circuit(qr, seed, sets).execute(b);
+
+            for(int y = 0; y < n; y++)
+                assertEquals(expected.qubits[y].probabilityOf(true), probability.apply(b, qr.qubits[y]), EPSILON,
+                        "circuit " + x + ", qubit " + y);
+            if(b instanceof AutoCloseable)
+                ((AutoCloseable)b).close();
+        }
+    }
+
+    /**
+     * Runs random circuits on two registers of plain qubits, and compares the probability of every basis state.
+     * @param first configures the library before the first register is created
+     * @param second configures the library before the second register is created
+     * @param fuse whether the circuit is fused before it is run on the second register
+     */
+    private static void compare(Runnable first, Runnable second, boolean fuse, QuantumGate[]... sets){
+        Random random = new Random(2);
+        for(int x = 0; x < CIRCUITS; x++){
+            int n = 1 + random.nextInt(6);
+            long value = random.nextInt(1<<n);
+            long seed = random.nextLong();
+
+            first.run();
+            QubitRegister a = new QubitRegister(n, value);
+            circuit(a, seed, sets).execute();
+            second.run();
+            QubitRegister b = new QubitRegister(n, value);
+            Circuit circuit = circuit(b, seed, sets);
+            (fuse ? circuit.fuse(1 + random.nextInt(4)) : circuit).execute();
+            for(long s = 0; s < 1<<n; s++)
+                assertEquals(a.probabilityOf(s), b.probabilityOf(s), EPSILON, "circuit " + x + ", state " + s);
+        }
+    }
+
+    @Test
+    void denseMatchesSparse(){
+        compare(() -> Configuration.setSparseThreshold(0), () -> Configuration.setSparseThreshold(1<<10), false, GATES, WIDE_GATES);
+    }
+
+    @Test
+    void fusedMatchesUnfused(){
+        compare(() -> {}, () -> {}, true, GATES, WIDE_GATES);
+    }
+
+    @Test
+    void densityMatrix() throws Exception{
+        compare(qr -> new DensityMatrix(qr.qubits), (b, q) -> b.probabilityOf(q, true), GATES, WIDE_GATES);
+    }
+
+    @Test
+    void matrixProductState() throws Exception{
+        compare(qr -> new MatrixProductState(Arrays.asList(qr.qubits), 1<<5), (b, q) -> b.probabilityOf(q, true), GATES);
+    }
+
+    @Test
+    void stabilizerTableau() throws Exception{
+        compare(qr -> new StabilizerTableau(qr.qubits), (b, q) -> b.probabilityOf(q, true), CLIFFORD_GATES);
+    }
+
+    @Test
+    void offHeapState() throws Exception{
+        compare(qr -> new OffHeapState(qr.qubits), (b, q) -> b.probabilityOf(q, true), GATES, WIDE_GATES);
+    }
+
+    @Test
+    void mappedOffHeapState(@TempDir Path directory) throws Exception{
+        int[] files = {0};
+        compare(qr -> new OffHeapState(Arrays.asList(qr.qubits), directory.resolve("state" + files[0]++)),
+                (b, q) -> b.probabilityOf(q, true), GATES, WIDE_GATES);
+    }
+
+    @Test
+    void trajectoriesWithoutNoise(){
+        Random random = new Random(3);
+        for(int x = 0; x < CIRCUITS; x++){
+            int n = 1 + random.nextInt(5);
+            long value = random.nextInt(1<<n);
+            long seed = random.nextLong();
+
+            QubitRegister expected = new QubitRegister(n, value);
+            circuit(expected, seed, GATES, WIDE_GATES).execute();
+            QubitRegister qr = new QubitRegister(n, value);
+            Trajectories.Result result = new Trajectories(circuit(qr, seed, GATES, WIDE_GATES)).run(qr, 10);
+            for(int s = 0; s < 1<<n; s++)
+                assertEquals(expected.probabilityOf(s), result.probability(s), EPSILON, "circuit " + x + ", state " + s);
+        }
+    }
+}
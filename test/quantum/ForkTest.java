@@ -0,0 +1,98 @@
+package quantum;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static quantum.QuantumGate.*;
+
+/**
+ * Checks that changing a fork leaves the state that it was forked from unchanged, and the other way around.
+ */
+class ForkTest {
+    private static double[] probabilities(QubitRegister qr){
+        double[] probabilities = new double[1<<qr.qubits.length];
+        for(int s = 0; s < probabilities.length; s++)
+            probabilities[s] = qr.probabilityOf(s);
+        return probabilities;
+    }
+
+    private static QubitRegister prepared(){
+        QubitRegister qr = new QubitRegister(6, 9);
+        H.accept(qr.qubits[0]);
+        CNOT.accept(qr.qubits[1], qr.qubits[0]);
+        H.accept(qr.qubits[2]);
+        C(R(3)).accept(qr.qubits[3], qr.qubits[2]);
+        SQRT_NOT.accept(qr.qubits[5]);
+        return qr;
+    }
+
+    @Test
+    void forkStartsEqual(){
+        QubitRegister qr = prepared();
+        assertArrayEquals(probabilities(qr), probabilities(qr.fork()), 1e-12);
+    }
+
+    @Test
+    void changingForkLeavesOriginal(){
+        QubitRegister qr = prepared();
+        double[] before = probabilities(qr);
+
+        QubitRegister fork = qr.fork();
+        H.accept(fork.qubits[1]);
+        CNOT.accept(fork.qubits[4], fork.qubits[2]);
+        fork.qubits[0].measure();
+        fork.measure();
+        assertArrayEquals(before, probabilities(qr), 1e-12);
+        for(Qubit q : fork.qubits)
+            assertFalse(qr.isEntangledWith(q));
+    }
+
+    @Test
+    void changingOriginalLeavesFork(){
+        QubitRegister qr = prepared();
+        QubitRegister fork = qr.fork();
+        double[] before = probabilities(fork);
+
+        SQRT_SWAP.accept(qr.qubits[0], qr.qubits[5]);
+        qr.measure();
+        assertArrayEquals(before, probabilities(fork), 1e-12);
+    }
+
+    @Test
+    void forkOfOffHeapState(){
+        QubitRegister qr = new QubitRegister(4);
+        try(OffHeapState state = new OffHeapState(qr.qubits)){
+            state.apply(H, qr.qubits[0]);
+            state.apply(CNOT, qr.qubits[1], qr.qubits[0]);
+            state.apply(H, qr.qubits[2]);
+            double[] before = new double[qr.qubits.length];
+            for(int x = 0; x < before.length; x++)
+                before[x] = state.probabilityOf(qr.qubits[x], true);
+
+            try(OffHeapState fork = state.fork()){
+                fork.apply(X, qr.qubits[3]);
+                fork.apply(H, qr.qubits[2]);
+                fork.measure(qr.qubits[0]);
+                for(int x = 0; x < before.length; x++)
+                    assertEquals(before[x], state.probabilityOf(qr.qubits[x], true), 1e-12, "qubit " + x);
+                assertEquals(1, fork.probabilityOf(qr.qubits[3], true), 1e-12);
+                assertEquals(0, fork.probabilityOf(qr.qubits[2], true), 1e-12);
+
+                state.apply(X, qr.qubits[2]);
+                assertEquals(0, fork.probabilityOf(qr.qubits[2], true), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    void rejectsEntangledRegister(){
+        QubitRegister qr = new QubitRegister(2);
+        Qubit outside = new Qubit();
+        H.accept(outside);
+        CNOT.accept(qr.qubits[0], outside);
+        assertThrows(IllegalArgumentException.class, qr::fork);
+        assertTrue(Arrays.stream(qr.qubits).anyMatch(q -> q.isEntangledWith(outside)));
+    }
+}
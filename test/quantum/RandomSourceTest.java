@@ -0,0 +1,73 @@
+package quantum;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static quantum.QuantumGate.*;
+
+/**
+ * Checks that seeded sources repeat their numbers for the same order of calls, whichever threads make them.
+ */
+class RandomSourceTest {
+    @Test
+    void seededSourceIgnoresThreads() throws Exception{
+        RandomSource one = RandomSource.seeded(42);
+        double[] expected = {one.nextDouble(), one.nextDouble(), one.nextDouble()};
+
+        RandomSource other = RandomSource.seeded(42);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try{
+            assertEquals(expected[0], other.nextDouble());
+            assertEquals(expected[1], executor.submit(other::nextDouble).get());
+            assertEquals(expected[2], other.nextDouble());
+        }
+        finally{
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void batchesContinueTheStream(){
+        RandomSource one = RandomSource.seeded(7);
+        double[] expected = new double[5];
+        for(int x = 0; x < expected.length; x++)
+            expected[x] = one.nextDouble();
+
+        RandomSource other = RandomSource.seeded(7);
+        double[] batch = new double[4];
+        other.nextDoubles(batch);
+        for(int x = 0; x < batch.length; x++)
+            assertEquals(expected[x], batch[x]);
+        assertEquals(expected[4], other.nextDouble());
+    }
+
+    /**
+     * Measures a new register of 8 qubits in an equal superposition.
+     */
+    private static int measure(Simulator simulator){
+        QubitRegister qr = simulator.register(8);
+        for(Qubit q : qr.qubits)
+            H.accept(q);
+        return qr.measure();
+    }
+
+    @Test
+    void seededSimulatorIgnoresThreads() throws Exception{
+        Simulator one = new Simulator(42);
+        int first = measure(one);
+        int second = measure(one);
+
+        Simulator other = new Simulator(42);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try{
+            assertEquals(first, measure(other));
+            assertEquals(second, executor.submit(() -> measure(other)).get());
+        }
+        finally{
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package quantum;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static quantum.QuantumGate.*;
+
+/**
+ * Saves registers to a file and loads them back, and checks that corrupt files are rejected.
+ */
+class SnapshotTest {
+    @TempDir
+    Path directory;
+
+    private static void assertSameState(QubitRegister expected, QubitRegister actual){
+        assertEquals(expected.qubits.length, actual.qubits.length);
+        assertEquals(expected.delegates().size(), actual.delegates().size());
+        for(long s = 0; s < 1L<<expected.qubits.length; s++)
+            assertEquals(expected.probabilityOf(s), actual.probabilityOf(s), 1e-12, "state " + s);
+    }
+
+    @Test
+    void roundTrip() throws IOException{
+        QubitRegister qr = new QubitRegister(8, 0b10100000);
+        H.accept(qr.qubits[0]);
+        CNOT.accept(qr.qubits[1], qr.qubits[0]);
+        R(3).accept(qr.qubits[1]);
+        H.accept(qr.qubits[3]);
+        C(SQRT_NOT).accept(qr.qubits[4], qr.qubits[3]);
+        SQRT_SWAP.accept(qr.qubits[5], qr.qubits[7]);
+
+        Path file = directory.resolve("register");
+        qr.save(file);
+        QubitRegister loaded = QubitRegister.load(file);
+        assertSameState(qr, loaded);
+        for(Qubit q : loaded.qubits)
+            assertFalse(qr.isEntangledWith(q));
+    }
+
+    @Test
+    void roundTripDense() throws IOException{
+        int threshold = Configuration.getSparseThreshold();
+        Configuration.setSparseThreshold(0);
+        try{
+            QubitRegister qr = new QubitRegister(10, 3);
+            for(int x = 0; x < 10; x++)
+                H.accept(qr.qubits[x]);
+            for(int x = 0; x+1 < 10; x++)
+                C(R(3)).accept(qr.qubits[x+1], qr.qubits[x]);
+
+            Path file = directory.resolve("dense");
+            qr.save(file);
+            assertSameState(qr, QubitRegister.load(file));
+        }
+        finally{
+            Configuration.setSparseThreshold(threshold);
+        }
+    }
+
+    @Test
+    void roundTripWide() throws IOException{
+        QubitRegister qr = new QubitRegister(40);
+        H.accept(qr.qubits[0]);
+        for(int x = 1; x < 40; x++)
+            CNOT.accept(qr.qubits[x], qr.qubits[0]);
+
+        Path file = directory.resolve("wide");
+        qr.save(file);
+        QubitRegister loaded = QubitRegister.load(file);
+        assertEquals(0.5, loaded.probabilityOf(0L), 1e-12);
+        assertEquals(0.5, loaded.probabilityOf((1L<<40) - 1), 1e-12);
+        long outcome = loaded.measureLong();
+        assertTrue(outcome == 0 || outcome == (1L<<40) - 1);
+    }
+
+    @Test
+    void loadThroughSimulator() throws IOException{
+        Simulator simulator = new Simulator(1);
+        QubitRegister qr = new QubitRegister(3, 5);
+        Path file = directory.resolve("simulated");
+        qr.save(file);
+
+        QubitRegister loaded = simulator.load(file);
+        for(Qubit q : loaded.qubits)
+            assertSame(simulator, q.simulator);
+        assertSameState(qr, loaded);
+    }
+
+    @Test
+    void rejectsEntangledRegister(){
+        QubitRegister qr = new QubitRegister(2);
+        Qubit outside = new Qubit();
+        H.accept(outside);
+        CNOT.accept(qr.qubits[0], outside);
+        assertThrows(IllegalArgumentException.class, () -> qr.save(directory.resolve("entangled")));
+    }
+
+    /**
+     * Writes a file that starts like a snapshot, followed by the given values.
+     */
+    private Path snapshot(Object... values) throws IOException{
+        ByteBuffer buffer = ByteBuffer.allocate(1<<10).order(ByteOrder.LITTLE_ENDIAN).putInt(0x4A515354).putInt(1);
+        for(Object value : values){
+            if(value instanceof Byte)
+                buffer.put((Byte)value);
+            else if(value instanceof Integer)
+                buffer.putInt((Integer)value);
+            else if(value instanceof Long)
+                buffer.putLong((Long)value);
+            else
+                buffer.putDouble((Double)value);
+        }
+        Path file = directory.resolve("corrupt");
+        Files.write(file, Arrays.copyOf(buffer.array(), buffer.position()));
+        return file;
+    }
+
+    private static void assertRejected(Path file){
+        int[] created = {0};
+        assertThrows(IOException.class, () -> Snapshot.load(file, () -> {
+            created[0]++;
+            return new Qubit();
+        }));
+        assertEquals(0, created[0], "qubits created from a corrupt file");
+    }
+
+    @Test
+    void rejectsCorruptFiles() throws IOException{
+        Path file = directory.resolve("short");
+        Files.write(file, new byte[]{1, 2, 3});
+        assertRejected(file);
+
+        assertRejected(snapshot(-5, 1));
+        assertRejected(snapshot(Integer.MAX_VALUE, 1));
+        //a repeated basis state
+        assertRejected(snapshot(2, 1, 2, 0, 1, (byte)1, 2, 1L, 1L, 1.0, 0.0, 0.0, 0.0));
+        //a basis state of more qubits than the state has
+        assertRejected(snapshot(2, 1, 2, 0, 1, (byte)1, 1, 4L, 1.0, 0.0));
+        //fewer coefficients than a dense state has
+        assertRejected(snapshot(2, 1, 2, 0, 1, (byte)0, 1.0));
+        //a qubit of the register that is in no state
+        assertRejected(snapshot(3, 1, 2, 0, 1, (byte)1, 1, 3L, 1.0, 0.0));
+    }
+}